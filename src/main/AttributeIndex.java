@@ -0,0 +1,69 @@
+package main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Case-insensitive index of one column of a {@link PeopleStore}: for every
+ * value, ignoring case the way {@link String#equalsIgnoreCase} does, the
+ * rows that have it, ascending.
+ *
+ * Every dictionary code is folded once and then points straight at its
+ * posting list, so indexing a new row costs an array read and an append.
+ * Rows without a value are not indexed.
+ */
+class AttributeIndex {
+
+	private final StringDictionary dictionary;
+	private final Map<String, PostingList> postings = new HashMap<>();
+	/* Posting list of every dictionary code seen so far */
+	private PostingList[] byCode = new PostingList[16];
+
+	AttributeIndex(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/** Rows whose value equals {@code value}, ignoring case. */
+	PostingList lookup(String value) {
+		PostingList rows = (value == null) ? null : postings.get(fold(value));
+		return (rows == null) ? PostingList.EMPTY : rows.snapshot();
+	}
+
+	/** Number of distinct values, ignoring case. */
+	int distinct() {
+		return postings.size();
+	}
+
+	/** Moves {@code row} from the rows of one code to those of another; -1 is no value. */
+	void change(int row, int oldCode, int newCode) {
+		if (oldCode == newCode)
+			return;
+		if (oldCode >= 0)
+			postingOf(oldCode).remove(row);
+		if (newCode >= 0)
+			postingOf(newCode).insert(row);
+	}
+
+	void trimToSize() {
+		for (PostingList rows : postings.values())
+			rows.trimToSize();
+	}
+
+	private PostingList postingOf(int code) {
+		if (code >= byCode.length)
+			byCode = Arrays.copyOf(byCode, Math.max(code + 1, byCode.length * 2));
+		PostingList rows = byCode[code];
+		if (rows == null)
+			rows = byCode[code] = postings.computeIfAbsent(fold(dictionary.decode(code)), k -> new PostingList());
+		return rows;
+	}
+
+	/* Two strings fold alike exactly when equalsIgnoreCase holds between them */
+	static String fold(String value) {
+		char[] chars = value.toCharArray();
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		return new String(chars);
+	}
+}
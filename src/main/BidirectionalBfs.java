@@ -0,0 +1,150 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Degrees-of-separation search that grows a BFS tree from both ends and
+ * always expands the side whose frontier has fewer outgoing edges.
+ *
+ * All state lives in primitive arrays that are allocated once per graph and
+ * reused between queries: a vertex counts as visited by a side when its stamp
+ * equals the current query epoch, so nothing has to be cleared. An instance
+ * is not thread safe.
+ */
+public class BidirectionalBfs {
+
+	private final FriendshipGraph graph;
+
+	private final int[] stampForward;
+	private final int[] stampBackward;
+	private final int[] parentForward;
+	private final int[] parentBackward;
+	private final int[] distForward;
+	private final int[] distBackward;
+	private final int[] queueForward;
+	private final int[] queueBackward;
+	private int epoch;
+
+	private int touched;
+
+	public BidirectionalBfs(FriendshipGraph graph) {
+		int n = graph.size();
+		this.graph = graph;
+		this.stampForward = new int[n];
+		this.stampBackward = new int[n];
+		this.parentForward = new int[n];
+		this.parentBackward = new int[n];
+		this.distForward = new int[n];
+		this.distBackward = new int[n];
+		this.queueForward = new int[n];
+		this.queueBackward = new int[n];
+	}
+
+	public FriendshipGraph getGraph() {
+		return graph;
+	}
+
+	/** Vertices visited by the last query, from both sides together. */
+	public int getTouched() {
+		return touched;
+	}
+
+	/**
+	 * Returns a shortest chain from source to target (both included), or null
+	 * if they are not connected.
+	 */
+	public int[] shortestChain(int source, int target) {
+		if (++epoch == 0) {
+			// stamps wrapped around, start over from a clean slate
+			Arrays.fill(stampForward, 0);
+			Arrays.fill(stampBackward, 0);
+			epoch = 1;
+		}
+
+		if (source == target) {
+			touched = 1;
+			return new int[] { source };
+		}
+
+		stampForward[source] = epoch;
+		parentForward[source] = -1;
+		distForward[source] = 0;
+		stampBackward[target] = epoch;
+		parentBackward[target] = -1;
+		distBackward[target] = 0;
+
+		int headF = 0, tailF = 0, headB = 0, tailB = 0;
+		queueForward[tailF++] = source;
+		queueBackward[tailB++] = target;
+		long volumeF = graph.degree(source);
+		long volumeB = graph.degree(target);
+
+		int bestLength = Integer.MAX_VALUE;
+		int meetFrom = -1, meetTo = -1; // edge meetFrom (forward side) - meetTo (backward side)
+
+		while (headF < tailF && headB < tailB) {
+			boolean forward = volumeF <= volumeB;
+			int[] queue = forward ? queueForward : queueBackward;
+			int[] stamp = forward ? stampForward : stampBackward;
+			int[] parent = forward ? parentForward : parentBackward;
+			int[] dist = forward ? distForward : distBackward;
+			int[] otherStamp = forward ? stampBackward : stampForward;
+			int[] otherDist = forward ? distBackward : distForward;
+
+			// ---- Expand one full level of the chosen side ----
+			int head = forward ? headF : headB;
+			int levelEnd = forward ? tailF : tailB;
+			int tail = levelEnd;
+			long volume = 0;
+
+			while (head < levelEnd) {
+				int node = queue[head++];
+				for (int e = graph.start(node); e < graph.end(node); e++) {
+					int friend = graph.target(e);
+					if (otherStamp[friend] == epoch) {
+						int length = dist[node] + 1 + otherDist[friend];
+						if (length < bestLength) {
+							bestLength = length;
+							meetFrom = forward ? node : friend;
+							meetTo = forward ? friend : node;
+						}
+					}
+					if (stamp[friend] != epoch) {
+						stamp[friend] = epoch;
+						parent[friend] = node;
+						dist[friend] = dist[node] + 1;
+						queue[tail++] = friend;
+						volume += graph.degree(friend);
+					}
+				}
+			}
+
+			if (forward) {
+				headF = head;
+				tailF = tail;
+				volumeF = volume;
+			} else {
+				headB = head;
+				tailB = tail;
+				volumeB = volume;
+			}
+
+			// a finished level that met the other side already holds the shortest meeting edge
+			if (bestLength != Integer.MAX_VALUE)
+				break;
+		}
+
+		touched = tailF + tailB;
+		if (bestLength == Integer.MAX_VALUE)
+			return null;
+
+		int[] path = new int[bestLength + 1];
+		int i = distForward[meetFrom];
+		for (int node = meetFrom; node != -1; node = parentForward[node])
+			path[i--] = node;
+		i = distForward[meetFrom] + 1;
+		for (int node = meetTo; node != -1; node = parentBackward[node])
+			path[i++] = node;
+		return path;
+	}
+}
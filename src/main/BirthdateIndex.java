@@ -0,0 +1,138 @@
+package main;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Birthdates of a {@link PeopleStore} as epoch days, and the rows sorted by
+ * them for range queries.
+ *
+ * A birthdate ("d-M-yyyy") is parsed once per distinct value, when its
+ * dictionary code is first asked for, so a row's day is two array reads.
+ * The rows sorted by day are built on the first range query after people
+ * change, with one counting pass over the rows; a query is then two binary
+ * searches.
+ */
+final class BirthdateIndex {
+
+	/** Day of a row whose birthdate is missing or not a valid date. */
+	static final int NO_DATE = Integer.MIN_VALUE;
+
+	private final StringDictionary dictionary;
+	/* Epoch day of each dictionary code below parsed */
+	private int[] dayOfCode = new int[16];
+	private int parsed;
+	/* Every dated row, ascending by day and then by row; null when stale */
+	private int[] days;
+	private int[] rows;
+
+	BirthdateIndex(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	int dayOf(int code) {
+		if (code < 0)
+			return NO_DATE;
+		if (code >= parsed) {
+			if (code >= dayOfCode.length)
+				dayOfCode = Arrays.copyOf(dayOfCode, Math.max(code + 1, dayOfCode.length * 2));
+			for (; parsed <= code; parsed++)
+				dayOfCode[parsed] = parse(dictionary.decode(parsed));
+		}
+		return dayOfCode[code];
+	}
+
+	/** Called when a row is added or its birthdate changes. */
+	void invalidate() {
+		days = null;
+		rows = null;
+	}
+
+	/** Rows born from day {@code from} to day {@code to}, both included, ascending. */
+	PostingList between(int from, int to, int[] codes, int size) {
+		if (days == null)
+			sort(codes, size);
+		int lo = firstAtLeast(from);
+		int hi = (to == Integer.MAX_VALUE) ? days.length : firstAtLeast(to + 1);
+		if (lo >= hi)
+			return PostingList.EMPTY;
+		int[] found = Arrays.copyOfRange(rows, lo, hi);
+		Arrays.sort(found);
+		return PostingList.of(found);
+	}
+
+	/** Number of rows born from {@code from} to {@code to}, without listing them. */
+	int count(int from, int to, int[] codes, int size) {
+		if (days == null)
+			sort(codes, size);
+		int lo = firstAtLeast(from);
+		int hi = (to == Integer.MAX_VALUE) ? days.length : firstAtLeast(to + 1);
+		return Math.max(0, hi - lo);
+	}
+
+	private int firstAtLeast(int day) {
+		int lo = 0, hi = days.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (days[mid] < day)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/* Orders the distinct dates, then places every row in one counting pass */
+	private void sort(int[] codes, int size) {
+		dayOf(dictionary.size() - 1);
+		int distinct = dictionary.size();
+		long[] byDay = new long[distinct];
+		int dated = 0;
+		for (int code = 0; code < distinct; code++) {
+			if (dayOfCode[code] != NO_DATE)
+				byDay[dated++] = ((long) dayOfCode[code] << 32) | code;
+		}
+		Arrays.sort(byDay, 0, dated);
+		int[] slotOfCode = new int[distinct];
+		Arrays.fill(slotOfCode, -1);
+		for (int i = 0; i < dated; i++)
+			slotOfCode[(int) byDay[i]] = i;
+
+		int[] start = new int[dated + 1];
+		for (int row = 0; row < size; row++) {
+			int slot = (codes[row] < 0) ? -1 : slotOfCode[codes[row]];
+			if (slot >= 0)
+				start[slot + 1]++;
+		}
+		for (int i = 0; i < dated; i++)
+			start[i + 1] += start[i];
+		int[] sortedDays = new int[start[dated]];
+		int[] sortedRows = new int[start[dated]];
+		for (int row = 0; row < size; row++) {
+			int slot = (codes[row] < 0) ? -1 : slotOfCode[codes[row]];
+			if (slot >= 0) {
+				sortedDays[start[slot]] = (int) (byDay[slot] >> 32);
+				sortedRows[start[slot]++] = row;
+			}
+		}
+		days = sortedDays;
+		rows = sortedRows;
+	}
+
+	/** Epoch day of a "d-M-yyyy" date, or {@link #NO_DATE}. */
+	static int parse(String date) {
+		if (date == null)
+			return NO_DATE;
+		String[] parts = date.trim().split("-");
+		if (parts.length != 3)
+			return NO_DATE;
+		try {
+			long day = LocalDate.of(Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[1].trim()),
+					Integer.parseInt(parts[0].trim())).toEpochDay();
+			return (day > NO_DATE && day <= Integer.MAX_VALUE) ? (int) day : NO_DATE;
+		} catch (NumberFormatException | DateTimeException e) {
+			return NO_DATE;
+		}
+	}
+}
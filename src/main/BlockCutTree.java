@@ -0,0 +1,104 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits an s–t longest-path problem along the block-cut tree.
+ *
+ * Every simple path from s to t crosses exactly the chain of biconnected
+ * blocks between them, entering and leaving each block through the same
+ * articulation points. The longest s–t path is therefore the concatenation
+ * of the longest entry–exit path inside each block of the chain, and each of
+ * those can be searched on its own, much smaller, subgraph.
+ */
+public class BlockCutTree {
+
+	/** One block of the chain, to be crossed from entry to exit. */
+	public static class Segment {
+		private final int[] vertices;
+		private final int entry;
+		private final int exit;
+
+		Segment(int[] vertices, int entry, int exit) {
+			this.vertices = vertices;
+			this.entry = entry;
+			this.exit = exit;
+		}
+
+		/** Vertices of the block, as indices of the whole graph. */
+		public int[] getVertices() {
+			return vertices;
+		}
+
+		public int getEntry() {
+			return entry;
+		}
+
+		public int getExit() {
+			return exit;
+		}
+
+		/** A block of two vertices is a bridge: there is nothing to search. */
+		public boolean isBridge() {
+			return vertices.length == 2;
+		}
+	}
+
+	private BlockCutTree() {
+	}
+
+	/**
+	 * Returns the blocks between source and target in path order, or null if
+	 * they are not connected.
+	 */
+	public static List<Segment> chain(FriendshipGraph graph, int source, int target) {
+		ResidualBound blocks = new ResidualBound(graph);
+		blocks.compute(new boolean[graph.size()], target);
+		if (!blocks.reachesTarget(source))
+			return null;
+
+		// ---- Walk up the block-cut tree from the source ----
+		List<Integer> chain = new ArrayList<>();
+		List<Integer> entries = new ArrayList<>();
+		int entry = source;
+		while (entry != target) {
+			int b = blocks.blockOf(entry);
+			chain.add(b);
+			entries.add(entry);
+			entry = blocks.blockTop(b);
+		}
+
+		// ---- Gather the members of the chain's blocks ----
+		int[] position = new int[graph.size()];
+		Arrays.fill(position, -1);
+		int[] sizes = new int[chain.size()];
+		for (int i = 0; i < chain.size(); i++)
+			position[chain.get(i)] = i;
+		for (int v = 0; v < graph.size(); v++) {
+			if (v != target && blocks.reachesTarget(v) && position[blocks.blockOf(v)] >= 0)
+				sizes[position[blocks.blockOf(v)]]++;
+		}
+
+		int[][] members = new int[chain.size()][];
+		int[] fill = new int[chain.size()];
+		for (int i = 0; i < chain.size(); i++) {
+			members[i] = new int[sizes[i] + 1];
+			members[i][fill[i]++] = blocks.blockTop(chain.get(i));
+		}
+		for (int v = 0; v < graph.size(); v++) {
+			if (v != target && blocks.reachesTarget(v) && position[blocks.blockOf(v)] >= 0) {
+				int i = position[blocks.blockOf(v)];
+				members[i][fill[i]++] = v;
+			}
+		}
+
+		List<Segment> segments = new ArrayList<>(chain.size());
+		for (int i = 0; i < chain.size(); i++) {
+			Arrays.sort(members[i]);
+			segments.add(new Segment(members[i], entries.get(i), blocks.blockTop(chain.get(i))));
+		}
+		return segments;
+	}
+}
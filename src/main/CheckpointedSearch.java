@@ -0,0 +1,118 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Exhaustive longest-path search that can be stopped and resumed, for runs
+ * far longer than the interactive budget.
+ *
+ * The search works off the {@link SearchFrontier} of a
+ * {@link SearchCheckpoint} in rounds. During a round every thread takes a
+ * subtree, explores it until the round ends and puts back what it did not
+ * finish; while the frontier holds fewer subtrees than the threads can use,
+ * subtrees are only explored for a moment, which splits them. Between rounds
+ * no subtree is in flight, so the checkpoint is consistent and is saved.
+ */
+public class CheckpointedSearch {
+
+	private static final long SPLIT_SLICE = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final FriendshipGraph graph;
+	private final int threads;
+	private final long checkpointInterval;
+	private final ThreadLocal<PathSearchEngine> engines;
+
+	/** A search that saves its checkpoint every {@code checkpointMillis} while it runs. */
+	public CheckpointedSearch(FriendshipGraph graph, int threads, long checkpointMillis) {
+		this.graph = graph;
+		this.threads = Math.max(1, threads);
+		this.checkpointInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, checkpointMillis));
+		this.engines = ThreadLocal.withInitial(() -> new PathSearchEngine(graph));
+	}
+
+	/**
+	 * A checkpoint at the start of a new search: the incumbent is a shortest
+	 * path and the frontier the whole tree. Only the exhaustive strategies
+	 * can be resumed.
+	 */
+	public static SearchCheckpoint start(FriendshipGraph graph, int source, int target, SearchStrategy strategy) {
+		if (strategy == SearchStrategy.RANDOMIZED)
+			throw new IllegalArgumentException("Randomized restarts have no frontier to resume");
+		LongestPathResult best = new LongestPathResult();
+		int[] shortest = new BidirectionalBfs(graph).shortestChain(source, target);
+		if (shortest == null)
+			return new SearchCheckpoint(source, target, strategy, 0, best, new SearchFrontier());
+		best.offer(shortest, shortest.length);
+
+		ResidualBound bound = new ResidualBound(graph);
+		bound.compute(new boolean[graph.size()], target);
+		return new SearchCheckpoint(source, target, strategy, bound.bound(source), best, SearchFrontier.from(source));
+	}
+
+	/**
+	 * Advances {@code checkpoint} until the deadline or the end of the search,
+	 * saving it to {@code file} (if not null) after every round and at the
+	 * end.
+	 */
+	public void run(SearchCheckpoint checkpoint, long deadline, Path file) throws IOException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			while (!checkpoint.isComplete() && System.nanoTime() < deadline) {
+				long roundEnd = Math.min(deadline, System.nanoTime() + checkpointInterval);
+				List<Callable<Void>> workers = new ArrayList<>();
+				for (int i = 0; i < threads; i++)
+					workers.add(() -> {
+						work(checkpoint, roundEnd);
+						return null;
+					});
+				for (Future<Void> worker : pool.invokeAll(workers))
+					worker.get();
+				if (file != null)
+					checkpoint.write(graph, file);
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		if (checkpoint.isComplete()) {
+			checkpoint.getBest().markOptimal();
+			if (file != null)
+				checkpoint.write(graph, file);
+		}
+	}
+
+	private void work(SearchCheckpoint checkpoint, long roundEnd) {
+		SearchFrontier frontier = checkpoint.getFrontier();
+		PathSearchEngine engine = engines.get();
+		while (System.nanoTime() < roundEnd) {
+			SearchFrontier.Subtree subtree = frontier.poll();
+			if (subtree == null) {
+				if (frontier.isExhausted())
+					return;
+				// another thread is about to split its subtree
+				LockSupport.parkNanos(100_000);
+				continue;
+			}
+			try {
+				long end = (frontier.size() < 2 * threads) ? Math.min(roundEnd, System.nanoTime() + SPLIT_SLICE)
+						: roundEnd;
+				engine.explore(subtree.prefix(), subtree.size(), checkpoint.getTarget(), checkpoint.getStrategy(),
+						end, checkpoint.getBest(), null);
+				engine.captureFrontier(frontier);
+			} finally {
+				frontier.finished();
+			}
+		}
+	}
+}
@@ -0,0 +1,406 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Parser for the people and friends text files that reads them through
+ * memory-mapped {@link FileChannel} regions instead of a Scanner.
+ *
+ * Every file is cut into chunks of about {@link #CHUNK_SIZE} bytes, each moved
+ * forward to the start of a line, and the chunks of all the files given are
+ * parsed together on one pool. The parsing works on the raw bytes: fields are
+ * found by scanning for ',' and ';', trimmed by index and only then turned
+ * into Strings, so no regex and no intermediate String[] are involved.
+ * Results are handed over in the order of the files and of the lines in them,
+ * so callers see exactly what reading the files one line at a time would give
+ * them. Each chunk is handed over as soon as it and every chunk before it are
+ * parsed, and only a couple of chunks per thread are parsed ahead, so the
+ * parsed form of the whole input is never held at once. Malformed lines go to
+ * a {@link RejectLog} and the file goes on.
+ */
+public class ChunkedFileParser {
+
+	static final int CHUNK_SIZE = 16 << 20;
+	/* Chunks parsed ahead of the one being handed over, per thread */
+	private static final int AHEAD = 2;
+	private static final int PERSON_FIELDS = 11;
+
+	private final int threads;
+
+	public ChunkedFileParser(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Passes the people of {@code files} to {@code sink} in order, skipping
+	 * the headers and blank lines. Lines with fewer than 11 fields, and files
+	 * that cannot be read, are recorded in {@code rejects}; a file that fails
+	 * partway keeps the people passed on before the failure.
+	 */
+	public void parsePeople(List<Path> files, RejectLog rejects, Consumer<Person> sink) {
+		parse(files, PeopleChunk::new, rejects, chunk -> ((PeopleChunk) chunk).people.forEach(sink));
+	}
+
+	/**
+	 * Reads the friendships of the friends {@code files}, skipping the headers,
+	 * as keys {@code (long) a << 32 | b} with {@code a < b} the indexes of the
+	 * two people in {@code graph}. The keys come in runs, one per chunk in
+	 * order, each sorted and without repeats, for
+	 * {@link FriendshipGraph#withEdges(long[][], long)} to merge. Pairs naming
+	 * someone not in the graph, or the same person twice, are left out. Lines
+	 * with fewer than two fields, and files that cannot be read, are recorded
+	 * in {@code rejects}.
+	 */
+	public long[][] parseEdges(List<Path> files, FriendshipGraph graph, RejectLog rejects) {
+		List<long[]> runs = new ArrayList<>();
+		parse(files, (path, channel, start, end, first) -> new EdgeChunk(path, channel, start, end, first, graph),
+				rejects, chunk -> runs.add(((EdgeChunk) chunk).keys));
+		return runs.toArray(new long[0][]);
+	}
+
+	/* ---- Chunking ---- */
+
+	private interface ChunkFactory {
+		Chunk create(Path path, FileChannel channel, long start, long end, boolean first);
+	}
+
+	/*
+	 * Parses the chunks of the readable files and hands each to done, in
+	 * order; their rejects go to the log by file line. Once a chunk of a file
+	 * fails, the rest of that file is left out.
+	 */
+	private void parse(List<Path> files, ChunkFactory factory, RejectLog rejects, Consumer<Chunk> done) {
+		Map<Path, String> failed = new LinkedHashMap<>();
+		List<FileChannel> channels = new ArrayList<>();
+		List<Chunk> chunks = new ArrayList<>();
+		try {
+			for (Path path : files) {
+				try {
+					FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+					channels.add(channel);
+					long[] bounds = boundaries(channel);
+					for (int i = 0; i + 1 < bounds.length; i++)
+						chunks.add(factory.create(path, channel, bounds[i], bounds[i + 1], i == 0));
+				} catch (IOException e) {
+					failed.putIfAbsent(path, describe(e));
+				}
+			}
+			run(chunks, failed, rejects, done);
+		} finally {
+			for (FileChannel channel : channels) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// read only, nothing to lose
+				}
+			}
+		}
+		failed.forEach((path, reason) -> rejects.fileFailed(path.getFileName().toString(), reason));
+	}
+
+	/*
+	 * Parses the chunks on a pool, at most AHEAD per thread past the one
+	 * awaited, and hands them over in order; a chunk is dropped once handed
+	 * over. A chunk that fails fails the rest of its file.
+	 */
+	private void run(List<Chunk> chunks, Map<Path, String> failed, RejectLog rejects, Consumer<Chunk> done) {
+		if (chunks.isEmpty())
+			return;
+		int workers = Math.min(threads, chunks.size());
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		List<Future<Chunk>> results = new ArrayList<>(chunks.size());
+		Path current = null;
+		long offset = 0;
+		try {
+			for (int i = 0; i < chunks.size(); i++) {
+				while (results.size() < chunks.size() && results.size() <= i + AHEAD * workers)
+					results.add(pool.submit(chunks.get(results.size())));
+				Chunk chunk = chunks.get(i);
+				try {
+					results.get(i).get();
+				} catch (ExecutionException e) {
+					failed.putIfAbsent(chunk.path, describe(e.getCause()));
+				}
+				chunks.set(i, null);
+				results.set(i, null);
+				if (failed.containsKey(chunk.path))
+					continue;
+
+				if (chunk.path != current) {
+					current = chunk.path;
+					offset = 0;
+				}
+				for (RejectLog.Entry entry : chunk.rejects.getEntries())
+					rejects.reject(entry.getFile(), offset + entry.getLine(), entry.getReason(), entry.getText());
+				offset += chunk.lines;
+				done.accept(chunk);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (Chunk chunk : chunks) {
+				if (chunk != null)
+					failed.putIfAbsent(chunk.path, "interrupted");
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static String describe(Throwable e) {
+		return (e instanceof NoSuchFileException) ? "file not found" : String.valueOf(e.getMessage());
+	}
+
+	/* Chunk limits: every one but the first starts right after a '\n' */
+	private long[] boundaries(FileChannel channel) throws IOException {
+		long size = channel.size();
+		int count = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		long[] bounds = new long[count + 1];
+		int used = 1;
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		for (int i = 1; i < count; i++) {
+			long position = Math.max(bounds[used - 1], size / count * i);
+			long start = size;
+			search: while (position < size) {
+				probe.clear();
+				int read = channel.read(probe, position);
+				if (read <= 0)
+					break;
+				for (int j = 0; j < read; j++) {
+					if (probe.get(j) == '\n') {
+						start = position + j + 1;
+						break search;
+					}
+				}
+				position += read;
+			}
+			if (start > bounds[used - 1] && start < size)
+				bounds[used++] = start;
+		}
+		bounds[used++] = size;
+		return Arrays.copyOf(bounds, used);
+	}
+
+	/* One chunk of a file; parsing fills in the results of the subclass */
+	private abstract static class Chunk implements Callable<Chunk> {
+		final Path path;
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final boolean first;
+		/* Lines in the chunk, blank ones included; rejects are numbered within the chunk */
+		int lines;
+		final RejectLog rejects = new RejectLog();
+
+		Chunk(Path path, FileChannel channel, long start, long end, boolean first) {
+			this.path = path;
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.first = first;
+		}
+
+		@Override
+		public Chunk call() throws IOException {
+			byte[] bytes = new byte[(int) (end - start)];
+			if (bytes.length > 0) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, bytes.length);
+				buffer.get(bytes);
+			}
+
+			int position = 0;
+			boolean header = first;
+			while (position < bytes.length) {
+				int lineEnd = position;
+				while (lineEnd < bytes.length && bytes[lineEnd] != '\n' && bytes[lineEnd] != '\r')
+					lineEnd++;
+				// "\r\n" is one line break
+				int next = lineEnd + ((lineEnd + 1 < bytes.length && bytes[lineEnd] == '\r' && bytes[lineEnd + 1] == '\n')
+						? 2 : 1);
+				lines++;
+
+				if (header) {
+					header = false;
+				} else {
+					int from = skipBlanks(bytes, position, lineEnd);
+					int to = trimEnd(bytes, from, lineEnd);
+					if (from < to)
+						line(bytes, from, to);
+				}
+				position = next;
+			}
+			finish();
+			return this;
+		}
+
+		/* Parses one trimmed, non-blank line */
+		abstract void line(byte[] bytes, int from, int to);
+
+		/* Called once every line is parsed, still on the worker */
+		void finish() {
+		}
+
+		void reject(String reason, byte[] bytes, int from, int to) {
+			rejects.reject(path.getFileName().toString(), lines, reason, new String(bytes, from, to - from, StandardCharsets.UTF_8));
+		}
+	}
+
+	private static final class PeopleChunk extends Chunk {
+		final List<Person> people = new ArrayList<>();
+
+		private final int[] commas = new int[PERSON_FIELDS];
+
+		PeopleChunk(Path path, FileChannel channel, long start, long end, boolean first) {
+			super(path, channel, start, end, first);
+		}
+
+		@Override
+		void line(byte[] bytes, int from, int to) {
+			// the field ends: commas[i] is the index just past field i
+			int fields = 0;
+			for (int i = from; i < to && fields < PERSON_FIELDS - 1; i++) {
+				if (bytes[i] == ',')
+					commas[fields++] = i;
+			}
+			if (fields < PERSON_FIELDS - 1) {
+				reject("expected 11 fields, found " + (fields + 1), bytes, from, to);
+				return;
+			}
+			int last = to;
+			for (int i = commas[PERSON_FIELDS - 2] + 1; i < to; i++) {
+				if (bytes[i] == ',') {
+					last = i;
+					break;
+				}
+			}
+			commas[PERSON_FIELDS - 1] = last;
+
+			Person person = new Person(field(bytes, from, commas[0]));
+			person.setName(field(bytes, commas[0] + 1, commas[1]));
+			person.setLastname(field(bytes, commas[1] + 1, commas[2]));
+			person.setBirthdate(field(bytes, commas[2] + 1, commas[3]));
+			person.setGender(field(bytes, commas[3] + 1, commas[4]));
+			person.setBirthplace(field(bytes, commas[4] + 1, commas[5]));
+			person.setHome(field(bytes, commas[5] + 1, commas[6]));
+			person.setStudiedAt(listField(bytes, commas[6] + 1, commas[7]));
+			person.setWorkplaces(listField(bytes, commas[7] + 1, commas[8]));
+			person.setFilms(listField(bytes, commas[8] + 1, commas[9]));
+			person.setGroupcode(field(bytes, commas[9] + 1, commas[10]));
+			people.add(person);
+		}
+	}
+
+	private static final class EdgeChunk extends Chunk {
+		private final FriendshipGraph graph;
+		long[] keys = new long[1024];
+		int count;
+
+		EdgeChunk(Path path, FileChannel channel, long start, long end, boolean first, FriendshipGraph graph) {
+			super(path, channel, start, end, first);
+			this.graph = graph;
+		}
+
+		@Override
+		void line(byte[] bytes, int from, int to) {
+			int comma = from;
+			while (comma < to && bytes[comma] != ',')
+				comma++;
+			// like split(","): a line whose other fields are all empty has one field
+			int rest = comma + 1;
+			while (rest < to && bytes[rest] == ',')
+				rest++;
+			if (rest >= to) {
+				reject("expected 2 fields", bytes, from, to);
+				return;
+			}
+			int second = comma + 1;
+			while (second < to && bytes[second] != ',')
+				second++;
+
+			// only friendships between people that actually exist
+			int a = lookup(bytes, from, comma);
+			int b = lookup(bytes, comma + 1, second);
+			if (a < 0 || b < 0 || a == b)
+				return;
+			if (count == keys.length)
+				keys = Arrays.copyOf(keys, count * 2);
+			keys[count++] = FriendshipGraph.edgeKey(a, b);
+		}
+
+		/* Sorts the keys and squeezes out repeats, trimmed to fit */
+		@Override
+		void finish() {
+			Arrays.sort(keys, 0, count);
+			int kept = 0;
+			for (int i = 0; i < count; i++) {
+				if (kept == 0 || keys[kept - 1] != keys[i])
+					keys[kept++] = keys[i];
+			}
+			count = kept;
+			keys = Arrays.copyOf(keys, kept);
+		}
+
+		private int lookup(byte[] bytes, int from, int to) {
+			from = skipBlanks(bytes, from, to);
+			return graph.indexOf(bytes, from, trimEnd(bytes, from, to));
+		}
+	}
+
+	/* ---- Field tokenizing, with String.trim() semantics ---- */
+
+	private static int skipBlanks(byte[] bytes, int from, int to) {
+		while (from < to && (bytes[from] & 0xFF) <= ' ')
+			from++;
+		return from;
+	}
+
+	private static int trimEnd(byte[] bytes, int from, int to) {
+		while (to > from && (bytes[to - 1] & 0xFF) <= ' ')
+			to--;
+		return to;
+	}
+
+	static String field(byte[] bytes, int from, int to) {
+		from = skipBlanks(bytes, from, to);
+		to = trimEnd(bytes, from, to);
+		return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	/* ';'-separated values, trimmed, empty ones left out */
+	static List<String> listField(byte[] bytes, int from, int to) {
+		from = skipBlanks(bytes, from, to);
+		to = trimEnd(bytes, from, to);
+		if (from == to)
+			return Collections.emptyList();
+		List<String> values = new ArrayList<>(4);
+		int start = from;
+		for (int i = from; i <= to; i++) {
+			if (i == to || bytes[i] == ';') {
+				int valueFrom = skipBlanks(bytes, start, i);
+				int valueTo = trimEnd(bytes, valueFrom, i);
+				if (valueFrom < valueTo)
+					values.add(new String(bytes, valueFrom, valueTo - valueFrom, StandardCharsets.UTF_8));
+				start = i + 1;
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,414 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Finds every maximal friend clique (crew) with at least {@code minSize}
+ * people.
+ *
+ * The vertices are put in degeneracy (k-core) order and the outer loop solves
+ * one independent subproblem per vertex v: P holds v's neighbours that come
+ * later in the ordering and X the earlier ones, so every maximal clique is
+ * reported exactly once, from its earliest vertex, and |P| never exceeds the
+ * degeneracy of the graph. In parallel mode these subproblems run on a
+ * {@link ForkJoinPool} with work stealing. Inside a neighbourhood the candidate sets are
+ * {@code long[]} bitsets over the local indices of P, so a subproblem takes
+ * |N(v)| * |P| bits however many friends v has, and the recursion is
+ * Bron–Kerbosch with Tomita pivoting. A branch is cut as soon as
+ * |R| + |P| < minSize, and vertices with fewer than minSize - 1 friends are
+ * ignored altogether since they cannot belong to such a crew.
+ */
+public class CliqueFinder {
+
+	/* Vertices handed to a single fork/join task before it stops splitting */
+	private static final int GRAIN = 64;
+
+	private final FriendshipGraph graph;
+	private final int minSize;
+	private int[] order;
+	private int[] rank;
+
+	public CliqueFinder(FriendshipGraph graph, int minSize) {
+		this.graph = graph;
+		this.minSize = Math.max(2, minSize);
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Returns the cliques with their members sorted by vertex index, largest
+	 * cliques first and ties in lexicographic order.
+	 */
+	public List<int[]> findCliques() {
+		List<int[]> cliques = new ArrayList<>();
+		forEachClique(1, cliques::add);
+		sort(cliques);
+		return cliques;
+	}
+
+	/** Same result as {@link #findCliques()}, computed on {@code threads} cores. */
+	public List<int[]> findCliquesParallel(int threads) {
+		ConcurrentLinkedQueue<int[]> sink = new ConcurrentLinkedQueue<>();
+		forEachClique(threads, sink::add);
+
+		List<int[]> cliques = new ArrayList<>(sink);
+		sort(cliques);
+		// every clique comes from exactly one subproblem, this only guards the contract
+		int write = 0;
+		for (int i = 0; i < cliques.size(); i++) {
+			if (write == 0 || !Arrays.equals(cliques.get(write - 1), cliques.get(i)))
+				cliques.set(write++, cliques.get(i));
+		}
+		return new ArrayList<>(cliques.subList(0, write));
+	}
+
+	/**
+	 * Streams every crew to {@code sink} as soon as it is found, in no
+	 * particular order. With more than one thread the sink is called
+	 * concurrently and must be thread safe.
+	 */
+	public void forEachClique(int threads, Consumer<int[]> sink) {
+		degeneracyOrder();
+		if (threads <= 1) {
+			Neighbourhood local = new Neighbourhood();
+			for (int v : order)
+				local.solve(v, sink);
+			return;
+		}
+
+		ThreadLocal<Neighbourhood> locals = ThreadLocal.withInitial(Neighbourhood::new);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new Subproblems(0, order.length, locals, sink));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static void sort(List<int[]> cliques) {
+		cliques.sort((a, b) -> (a.length != b.length) ? Integer.compare(b.length, a.length) : Arrays.compare(a, b));
+	}
+
+	/*
+	 * Matula–Beck peeling: repeatedly remove a vertex of minimum remaining
+	 * degree, using buckets indexed by degree so the whole pass is O(n + m).
+	 */
+	private void degeneracyOrder() {
+		if (order != null)
+			return;
+		int n = graph.size();
+		int maxDegree = 0;
+		int[] degree = new int[n];
+		for (int v = 0; v < n; v++) {
+			degree[v] = graph.degree(v);
+			maxDegree = Math.max(maxDegree, degree[v]);
+		}
+
+		// vertices sorted by degree, with bucketStart[d] the first slot of degree d
+		int[] bucketStart = new int[maxDegree + 2];
+		for (int v = 0; v < n; v++)
+			bucketStart[degree[v] + 1]++;
+		for (int d = 0; d <= maxDegree; d++)
+			bucketStart[d + 1] += bucketStart[d];
+		int[] sorted = new int[n];
+		int[] position = new int[n];
+		int[] fill = Arrays.copyOf(bucketStart, maxDegree + 1);
+		for (int v = 0; v < n; v++) {
+			position[v] = fill[degree[v]]++;
+			sorted[position[v]] = v;
+		}
+
+		for (int i = 0; i < n; i++) {
+			int v = sorted[i];
+			for (int e = graph.start(v); e < graph.end(v); e++) {
+				int w = graph.target(e);
+				if (degree[w] > degree[v]) {
+					// move w to the front of its bucket, then shrink the bucket by one
+					int d = degree[w];
+					int front = bucketStart[d];
+					int u = sorted[front];
+					if (u != w) {
+						sorted[position[w]] = u;
+						position[u] = position[w];
+						sorted[front] = w;
+						position[w] = front;
+					}
+					bucketStart[d]++;
+					degree[w]--;
+				}
+			}
+		}
+
+		order = sorted;
+		rank = new int[n];
+		for (int i = 0; i < n; i++)
+			rank[order[i]] = i;
+	}
+
+	/* A slice of the degeneracy order, split in halves until it is small enough */
+	private class Subproblems extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final ThreadLocal<Neighbourhood> locals;
+		private final Consumer<int[]> sink;
+
+		Subproblems(int from, int to, ThreadLocal<Neighbourhood> locals, Consumer<int[]> sink) {
+			this.from = from;
+			this.to = to;
+			this.locals = locals;
+			this.sink = sink;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				Neighbourhood local = locals.get();
+				for (int i = from; i < to; i++)
+					local.solve(order[i], sink);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Subproblems(from, middle, locals, sink), new Subproblems(middle, to, locals, sink));
+		}
+	}
+
+	/*
+	 * Subproblem state for one vertex; the arrays are reused from vertex to
+	 * vertex. The bitsets span P only: an earlier neighbour never joins R, so
+	 * it keeps just its row against P, for the pivot and the maximality check.
+	 */
+	private class Neighbourhood {
+		/* P members are local index i >= 0, X members -1 - j */
+		private final int[] localIndex = new int[graph.size()];
+		private final int[] stamp = new int[graph.size()];
+		private int epoch;
+
+		private int[] members = new int[16];
+		private long[][] adjacency = new long[0][];
+		private int size;
+		private int words;
+
+		/* Row j of X member xMembers[j] is xRows[j * words ..], its bits the P members it knows */
+		private int[] xMembers = new int[16];
+		private long[] xRows = new long[0];
+		/* The X members still adjacent to all of R, one run per depth */
+		private int[] xList = new int[16];
+
+		private final int[] clique = new int[graph.size()];
+		private long[][] pStack = new long[0][];
+		private long[][] xStack = new long[0][];
+
+		void solve(int v, Consumer<int[]> sink) {
+			if (graph.degree(v) < minSize - 1)
+				return;
+
+			// ---- Collect the usable later neighbours of v into P, the earlier ones into X ----
+			epoch++;
+			size = 0;
+			int xCount = 0;
+			for (int e = graph.start(v); e < graph.end(v); e++) {
+				int w = graph.target(e);
+				if (graph.degree(w) < minSize - 1)
+					continue;
+				stamp[w] = epoch;
+				if (rank[w] > rank[v]) {
+					if (size == members.length)
+						members = Arrays.copyOf(members, size * 2);
+					members[size] = w;
+					localIndex[w] = size++;
+				} else {
+					if (xCount == xMembers.length)
+						xMembers = Arrays.copyOf(xMembers, xCount * 2);
+					xMembers[xCount] = w;
+					localIndex[w] = -1 - xCount++;
+				}
+			}
+			if (size + 1 < minSize)
+				return;
+
+			words = (size + 63) >>> 6;
+			if (adjacency.length < size)
+				adjacency = new long[Math.max(size, adjacency.length * 2)][];
+			if (xRows.length < (long) xCount * words)
+				xRows = new long[Math.max(xCount * words, xRows.length * 2)];
+			else
+				Arrays.fill(xRows, 0, xCount * words, 0L);
+			for (int i = 0; i < size; i++) {
+				long[] row = adjacency[i];
+				if (row == null || row.length < words)
+					row = adjacency[i] = new long[words];
+				else
+					Arrays.fill(row, 0, words, 0L);
+				int w = members[i];
+				int degree = graph.degree(w);
+				if ((long) (size + xCount) * (32 - Integer.numberOfLeadingZeros(degree)) < degree) {
+					// a hub: binary searches for the neighbourhood cost less than walking all its friends
+					for (int k = 0; k < size; k++) {
+						if (graph.areFriends(w, members[k]))
+							row[k >>> 6] |= 1L << k;
+					}
+					for (int j = 0; j < xCount; j++) {
+						if (graph.areFriends(w, xMembers[j]))
+							xRows[j * words + (i >>> 6)] |= 1L << i;
+					}
+					continue;
+				}
+				for (int e = graph.start(w); e < graph.end(w); e++) {
+					int x = graph.target(e);
+					if (stamp[x] != epoch)
+						continue;
+					int local = localIndex[x];
+					if (local >= 0)
+						row[local >>> 6] |= 1L << local;
+					else
+						xRows[(-1 - local) * words + (i >>> 6)] |= 1L << i;
+				}
+			}
+
+			// ---- X keeps only the members that know someone in P ----
+			if (xList.length < xCount)
+				xList = new int[Math.max(xCount, xList.length * 2)];
+			int xTo = 0;
+			for (int j = 0; j < xCount; j++) {
+				for (int w = 0; w < words; w++) {
+					if (xRows[j * words + w] != 0) {
+						xList[xTo++] = j;
+						break;
+					}
+				}
+			}
+
+			pStack = grow(pStack, 0);
+			xStack = grow(xStack, 0);
+			long[] p = level(pStack, 0);
+			level(xStack, 0);
+			for (int i = 0; i < size; i++)
+				p[i >>> 6] |= 1L << i;
+
+			clique[0] = v;
+			expand(1, 0, 0, xTo, sink);
+		}
+
+		/* x holds the members of P already tried; xList[xFrom..xTo) the members of X left */
+		private void expand(int rSize, int depth, int xFrom, int xTo, Consumer<int[]> sink) {
+			long[] p = pStack[depth];
+			long[] x = xStack[depth];
+
+			int pCount = count(p);
+			if (rSize + pCount < minSize)
+				return;
+			if (pCount == 0) {
+				if (count(x) == 0 && xFrom == xTo)
+					report(rSize, sink);
+				return;
+			}
+
+			// ---- Tomita pivot: the vertex of P ∪ X with most neighbours in P ----
+			long[] pivotRow = null;
+			int pivotOffset = 0;
+			int best = -1;
+			for (int w = 0; w < words; w++) {
+				long bits = p[w] | x[w];
+				while (bits != 0) {
+					int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					int c = countAnd(adjacency[u], 0, p);
+					if (c > best) {
+						best = c;
+						pivotRow = adjacency[u];
+						pivotOffset = 0;
+					}
+				}
+			}
+			for (int i = xFrom; i < xTo; i++) {
+				int offset = xList[i] * words;
+				int c = countAnd(xRows, offset, p);
+				if (c > best) {
+					best = c;
+					pivotRow = xRows;
+					pivotOffset = offset;
+				}
+			}
+
+			pStack = grow(pStack, depth + 1);
+			xStack = grow(xStack, depth + 1);
+			long[] nextP = level(pStack, depth + 1);
+			long[] nextX = level(xStack, depth + 1);
+			if (xList.length < xTo + (xTo - xFrom))
+				xList = Arrays.copyOf(xList, Math.max(xTo + (xTo - xFrom), xList.length * 2));
+
+			for (int w = 0; w < words; w++) {
+				long bits = p[w] & ~pivotRow[pivotOffset + w];
+				while (bits != 0) {
+					int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+					long bit = bits & -bits;
+					bits &= bits - 1;
+
+					long[] row = adjacency[u];
+					for (int i = 0; i < words; i++) {
+						nextP[i] = p[i] & row[i];
+						nextX[i] = x[i] & row[i];
+					}
+					int nextTo = xTo;
+					for (int i = xFrom; i < xTo; i++) {
+						int j = xList[i];
+						if ((xRows[j * words + w] & bit) != 0)
+							xList[nextTo++] = j;
+					}
+					clique[rSize] = members[u];
+					expand(rSize + 1, depth + 1, xTo, nextTo, sink);
+
+					p[w] &= ~bit;
+					x[w] |= bit;
+					if (rSize + count(p) < minSize)
+						return;
+				}
+			}
+		}
+
+		private void report(int rSize, Consumer<int[]> sink) {
+			int[] result = Arrays.copyOf(clique, rSize);
+			Arrays.sort(result);
+			sink.accept(result);
+		}
+
+		private long[] level(long[][] stack, int depth) {
+			long[] bits = stack[depth];
+			Arrays.fill(bits, 0, words, 0L);
+			return bits;
+		}
+
+		private long[][] grow(long[][] stack, int depth) {
+			if (stack.length <= depth)
+				stack = Arrays.copyOf(stack, Math.max(depth + 1, stack.length * 2));
+			if (stack[depth] == null || stack[depth].length < words)
+				stack[depth] = new long[Math.max(words, 1)];
+			return stack;
+		}
+
+		private int count(long[] bits) {
+			int c = 0;
+			for (int w = 0; w < words; w++)
+				c += Long.bitCount(bits[w]);
+			return c;
+		}
+
+		/* Bits of the row at a[offset..] that are also in b */
+		private int countAnd(long[] a, int offset, long[] b) {
+			int c = 0;
+			for (int w = 0; w < words; w++)
+				c += Long.bitCount(a[offset + w] & b[w]);
+			return c;
+		}
+	}
+}
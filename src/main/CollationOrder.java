@@ -0,0 +1,105 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * The order of {@link Person#compareTo} over the rows of a
+ * {@link PeopleStore}: birthplace, then lastname, then name, ignoring case.
+ *
+ * Each of the three dictionaries is sorted once, giving every code a rank,
+ * so comparing two rows compares ints. The rows themselves are put in order
+ * by three stable counting passes over those ranks, with ties left in row
+ * order as a stable sort of the rows would; sorting a set of rows is then a
+ * sort of their positions. A missing value sorts first.
+ */
+final class CollationOrder {
+
+	private final int[] birthplaceRank;
+	private final int[] lastnameRank;
+	private final int[] nameRank;
+	private final int[] birthplaces;
+	private final int[] lastnames;
+	private final int[] names;
+	/* order[i] is the i-th row; position[row] is its index in order */
+	private final int[] order;
+	private final int[] position;
+
+	CollationOrder(PeopleStore people) {
+		int n = people.size();
+		birthplaces = people.codes(PeopleStore.Column.BIRTHPLACE);
+		lastnames = people.codes(PeopleStore.Column.LASTNAME);
+		names = people.codes(PeopleStore.Column.NAME);
+		birthplaceRank = ranks(people.dictionary(PeopleStore.Column.BIRTHPLACE));
+		lastnameRank = ranks(people.dictionary(PeopleStore.Column.LASTNAME));
+		nameRank = ranks(people.dictionary(PeopleStore.Column.NAME));
+
+		// ---- Least significant key first; each pass keeps the order of the last ----
+		int[] rows = new int[n];
+		for (int row = 0; row < n; row++)
+			rows[row] = row;
+		rows = pass(rows, names, nameRank);
+		rows = pass(rows, lastnames, lastnameRank);
+		order = pass(rows, birthplaces, birthplaceRank);
+		position = new int[n];
+		for (int i = 0; i < n; i++)
+			position[order[i]] = i;
+	}
+
+	/** Negative, zero or positive as row a sorts before, with or after row b. */
+	int compare(int a, int b) {
+		int c = Integer.compare(rank(birthplaceRank, birthplaces[a]), rank(birthplaceRank, birthplaces[b]));
+		if (c != 0)
+			return c;
+		c = Integer.compare(rank(lastnameRank, lastnames[a]), rank(lastnameRank, lastnames[b]));
+		if (c != 0)
+			return c;
+		return Integer.compare(rank(nameRank, names[a]), rank(nameRank, names[b]));
+	}
+
+	/** The rows in {@code rows}, in collation order. */
+	int[] sort(PostingList rows) {
+		int[] positions = new int[rows.size()];
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = position[rows.get(i)];
+		Arrays.sort(positions);
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = order[positions[i]];
+		return positions;
+	}
+
+	private static int rank(int[] ranks, int code) {
+		return (code < 0) ? -1 : ranks[code];
+	}
+
+	/* Stable counting sort of rows by the rank of their code; missing values first */
+	private static int[] pass(int[] rows, int[] codes, int[] ranks) {
+		int[] start = new int[ranks.length + 2];
+		for (int row : rows)
+			start[rank(ranks, codes[row]) + 2]++;
+		for (int i = 0; i + 1 < start.length; i++)
+			start[i + 1] += start[i];
+		int[] sorted = new int[rows.length];
+		for (int row : rows)
+			sorted[start[rank(ranks, codes[row]) + 1]++] = row;
+		return sorted;
+	}
+
+	/* Rank of every code when the values are sorted with compareToIgnoreCase; equal values share one */
+	private static int[] ranks(StringDictionary dictionary) {
+		int d = dictionary.size();
+		String[] values = new String[d];
+		Integer[] codes = new Integer[d];
+		for (int code = 0; code < d; code++) {
+			values[code] = dictionary.decode(code);
+			codes[code] = code;
+		}
+		Arrays.sort(codes, (a, b) -> values[a].compareToIgnoreCase(values[b]));
+		int[] ranks = new int[d];
+		for (int i = 0, rank = 0; i < d; i++) {
+			if (i > 0 && values[codes[i]].compareToIgnoreCase(values[codes[i - 1]]) != 0)
+				rank++;
+			ranks[codes[i]] = rank;
+		}
+		return ranks;
+	}
+}
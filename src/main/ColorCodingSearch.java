@@ -0,0 +1,389 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decides whether there is a simple path of exactly k people between two
+ * people, by color coding (Alon–Yuster–Zwick).
+ *
+ * Each trial gives the c = k - 2 inner positions of the path c colours, paints
+ * every other vertex with one of them at random, and looks for a colourful
+ * path: one whose inner vertices all have different colours, and so are all
+ * different. That is a DP over positions where every vertex keeps a bitset of
+ * the colour sets with which a colourful path from the source can reach it,
+ * O(2^c · m) per trial. A path of k people survives a random colouring with
+ * probability p = c!/c^c, so ln(1/ε)/p independent trials miss it with
+ * probability at most ε. Trials run in parallel and stop at the first hit.
+ *
+ * Only vertices with d(s, v) + d(v, t) < k can be on such a path, and at
+ * position i only those with d(s, v) <= i and d(v, t) < k - i, which usually
+ * leaves a small part of a large graph. The distances are kept while the
+ * same pair is searched again, as the portfolio does with growing k.
+ */
+public class ColorCodingSearch {
+
+	/* 2^18 colour sets per vertex and position is as far as the tables go */
+	public static final int MAX_PEOPLE = 20;
+
+	private final FriendshipGraph graph;
+	private final int threads;
+	private long trialsRun;
+	private boolean ruledOut;
+
+	/* Distances of the last pair searched, to both ends */
+	private int pairSource = -1;
+	private int pairTarget = -1;
+	private int[] fromSource;
+	private int[] toTarget;
+	private int[] queue;
+	/* Vertices other than the pair by d(s, v) + d(v, t); the first reachEnd[k] of them have it below k */
+	private int[] byReach;
+	private final int[] reachEnd = new int[MAX_PEOPLE + 1];
+
+	/* Vertices that may lie on the path; localIndex is -1 for every other vertex */
+	private int[] candidates = new int[0];
+	private int[] localIndex;
+
+	public ColorCodingSearch(FriendshipGraph graph, int threads) {
+		this.graph = graph;
+		this.threads = Math.max(1, threads);
+	}
+
+	/** Trials needed to miss an existing path of {@code people} with probability at most {@code error}. */
+	public static long trials(int people, double error) {
+		int c = people - 2;
+		if (c <= 1)
+			return 1;
+		double p = 1;
+		for (int i = 1; i <= c; i++)
+			p *= (double) i / c;
+		return (long) Math.ceil(Math.log(1 / error) / p);
+	}
+
+	/**
+	 * Bytes of DP tables one worker needs for paths of {@code people} people
+	 * between source and target; {@link #findPath} refuses to use more than
+	 * half of the heap.
+	 */
+	public long tableBytes(int source, int target, int people) {
+		if (people <= 2 || source == target)
+			return 0;
+		prepare(source, target);
+		int count = reachEnd[Math.min(people, MAX_PEOPLE)];
+		return (long) (people - 2) * count * Math.max(8, (1L << (people - 2)) >>> 3);
+	}
+
+	/** Trials the last call to {@link #findPath} ran before it stopped. */
+	public long getTrialsRun() {
+		return trialsRun;
+	}
+
+	/**
+	 * Whether the last call to {@link #findPath} returned null without any
+	 * trials because the distances alone rule the path out: the target is
+	 * unreachable, or even the shortest chain has more people.
+	 */
+	public boolean isRuledOut() {
+		return ruledOut;
+	}
+
+	/**
+	 * Returns a simple path of exactly {@code people} people from source to
+	 * target, or null if none was found in {@link #trials} trials or before
+	 * the deadline. Without a deadline a null answer is wrong with
+	 * probability at most {@code error}.
+	 */
+	public int[] findPath(int source, int target, int people, double error, long deadline)
+			throws InterruptedException {
+		if (people < 1 || people > MAX_PEOPLE)
+			throw new IllegalArgumentException("Paths of 1 to " + MAX_PEOPLE + " people only");
+		trialsRun = 0;
+		ruledOut = false;
+		if (source == target) {
+			ruledOut = people != 1;
+			return ruledOut ? null : new int[] { source };
+		}
+
+		prepare(source, target);
+		int shortest = fromSource[target];
+		if (shortest < 0 || shortest + 1 > people) {
+			ruledOut = true;
+			return null;
+		}
+		if (shortest + 1 == people)
+			return new BidirectionalBfs(graph).shortestChain(source, target);
+
+		// ---- Keep the vertices that fit somewhere on a path of k people ----
+		for (int v : candidates)
+			localIndex[v] = -1;
+		candidates = Arrays.copyOf(byReach, reachEnd[people]);
+		Arrays.sort(candidates);
+		for (int i = 0; i < candidates.length; i++)
+			localIndex[candidates[i]] = i;
+
+		// every worker holds k - 2 tables of 2^(k-2) bits per candidate; use half of the heap at most
+		long table = tableBytes(source, target, people);
+		int workerCount = (int) Math.min(threads, Runtime.getRuntime().maxMemory() / 2 / Math.max(1, table));
+		if (workerCount == 0)
+			throw new IllegalArgumentException("Too many people around this pair for paths of " + people);
+
+		long total = trials(people, error);
+		AtomicLong next = new AtomicLong();
+		AtomicReference<int[]> result = new AtomicReference<>();
+
+		if (workerCount == 1) {
+			runTrials(source, target, people, System.nanoTime(), total, next, result, deadline);
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+			try {
+				List<Callable<Void>> workers = new ArrayList<>();
+				for (int i = 0; i < workerCount; i++) {
+					long seed = System.nanoTime() + i;
+					workers.add(() -> {
+						runTrials(source, target, people, seed, total, next, result, deadline);
+						return null;
+					});
+				}
+				for (Future<Void> worker : pool.invokeAll(workers))
+					worker.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		trialsRun = Math.min(next.get(), total);
+		return result.get();
+	}
+
+	/* One worker: trials from the shared counter until one finds a path, they run out or time does */
+	private void runTrials(int source, int target, int people, long seed, long total, AtomicLong next,
+			AtomicReference<int[]> result, long deadline) {
+		Trial trial = new Trial(source, target, people, seed);
+		while (result.get() == null && System.nanoTime() < deadline) {
+			if (next.getAndIncrement() >= total)
+				break;
+			int[] path = trial.run();
+			if (path != null)
+				result.compareAndSet(null, path);
+		}
+	}
+
+	/* Distances from both ends and the vertices by d(s, v) + d(v, t), unless this pair is the last one */
+	private void prepare(int source, int target) {
+		if (source == pairSource && target == pairTarget)
+			return;
+		int n = graph.size();
+		if (localIndex == null) {
+			localIndex = new int[n];
+			Arrays.fill(localIndex, -1);
+			fromSource = new int[n];
+			toTarget = new int[n];
+			queue = new int[n];
+		}
+		distances(source, fromSource);
+		distances(target, toTarget);
+
+		// counting sort on the sum, keeping only sums that a path of MAX_PEOPLE can use
+		Arrays.fill(reachEnd, 0);
+		for (int v = 0; v < n; v++) {
+			int sum = reach(v, source, target);
+			if (sum < MAX_PEOPLE)
+				reachEnd[sum + 1]++;
+		}
+		for (int k = 1; k <= MAX_PEOPLE; k++)
+			reachEnd[k] += reachEnd[k - 1];
+		byReach = new int[reachEnd[MAX_PEOPLE]];
+		int[] at = Arrays.copyOf(reachEnd, MAX_PEOPLE);
+		for (int v = 0; v < n; v++) {
+			int sum = reach(v, source, target);
+			if (sum < MAX_PEOPLE)
+				byReach[at[sum]++] = v;
+		}
+		pairSource = source;
+		pairTarget = target;
+	}
+
+	/* d(s, v) + d(v, t), or MAX_PEOPLE for the pair itself and vertices that do not reach both */
+	private int reach(int v, int source, int target) {
+		if (v == source || v == target || fromSource[v] < 0 || toTarget[v] < 0)
+			return MAX_PEOPLE;
+		return Math.min(MAX_PEOPLE, fromSource[v] + toTarget[v]);
+	}
+
+	/* BFS hop counts from v into distance, -1 where it cannot reach */
+	private void distances(int v, int[] distance) {
+		Arrays.fill(distance, -1);
+		int head = 0;
+		int tail = 0;
+		distance[v] = 0;
+		queue[tail++] = v;
+		while (head < tail) {
+			int u = queue[head++];
+			for (int e = graph.start(u); e < graph.end(u); e++) {
+				int w = graph.target(e);
+				if (distance[w] < 0) {
+					distance[w] = distance[u] + 1;
+					queue[tail++] = w;
+				}
+			}
+		}
+	}
+
+	/* One worker's colouring and DP tables, reused from trial to trial */
+	private class Trial {
+		/* Colour sets whose bit `colour` is clear, for the colours inside one word */
+		private final long[] lowMasks = { 0x5555555555555555L, 0x3333333333333333L, 0x0F0F0F0F0F0F0F0FL,
+				0x00FF00FF00FF00FFL, 0x0000FFFF0000FFFFL, 0x00000000FFFFFFFFL };
+
+		private final int source;
+		private final int target;
+		private final int people;
+		private final int colours;
+		private final int words;
+		private final SplittableRandom rnd;
+
+		private final int[] colour;
+		/* sets[i][v * words ..] : colour sets of colourful paths s..v with v at position i + 1 */
+		private final long[][] sets;
+		private final int[][] active;
+		private final int[] activeCount;
+		private final boolean[] queued;
+
+		Trial(int source, int target, int people, long seed) {
+			this.source = source;
+			this.target = target;
+			this.people = people;
+			this.colours = people - 2;
+			this.words = Math.max(1, (1 << colours) >>> 6);
+			this.rnd = new SplittableRandom(seed);
+			int count = candidates.length;
+			this.colour = new int[count];
+			this.sets = new long[colours][count * words];
+			this.active = new int[colours][count];
+			this.activeCount = new int[colours];
+			this.queued = new boolean[count];
+		}
+
+		int[] run() {
+			for (int i = 0; i < candidates.length; i++)
+				colour[i] = rnd.nextInt(colours);
+			for (int i = 0; i < colours; i++) {
+				for (int a = 0; a < activeCount[i]; a++)
+					Arrays.fill(sets[i], active[i][a] * words, (active[i][a] + 1) * words, 0L);
+				activeCount[i] = 0;
+			}
+
+			// ---- Position 1: friends of the source ----
+			for (int e = graph.start(source); e < graph.end(source); e++) {
+				int x = localIndex[graph.target(e)];
+				if (x >= 0 && fits(x, 1)) {
+					int set = 1 << colour[x];
+					sets[0][x * words + (set >>> 6)] |= 1L << set;
+					active[0][activeCount[0]++] = x;
+				}
+			}
+
+			// ---- Position i + 1 from position i ----
+			for (int i = 0; i + 1 < colours; i++) {
+				long[] from = sets[i];
+				long[] to = sets[i + 1];
+				for (int a = 0; a < activeCount[i]; a++) {
+					int x = active[i][a];
+					int v = candidates[x];
+					for (int e = graph.start(v); e < graph.end(v); e++) {
+						int y = localIndex[graph.target(e)];
+						if (y < 0 || !fits(y, i + 2))
+							continue;
+						if (addColour(from, x * words, to, y * words, colour[y]) && !queued[y]) {
+							queued[y] = true;
+							active[i + 1][activeCount[i + 1]++] = y;
+						}
+					}
+				}
+				for (int a = 0; a < activeCount[i + 1]; a++)
+					queued[active[i + 1][a]] = false;
+			}
+
+			// ---- A colourful path with every colour that ends next to the target ----
+			int all = (1 << colours) - 1;
+			int last = colours - 1;
+			for (int a = 0; a < activeCount[last]; a++) {
+				int x = active[last][a];
+				if (has(sets[last], x, all) && graph.areFriends(candidates[x], target))
+					return walkBack(x, all);
+			}
+			return null;
+		}
+
+		/* Vertex x may sit at this position of a path of `people` (the source is at 0) */
+		private boolean fits(int x, int position) {
+			int v = candidates[x];
+			return fromSource[v] <= position && toTarget[v] < people - position;
+		}
+
+		/* to |= { S + c : S in from, c not in S }; returns whether anything new arrived */
+		private boolean addColour(long[] from, int fromOffset, long[] to, int toOffset, int c) {
+			boolean changed = false;
+			if (c < 6) {
+				long mask = lowMasks[c];
+				int shift = 1 << c;
+				for (int w = 0; w < words; w++) {
+					long bits = (from[fromOffset + w] & mask) << shift;
+					if ((bits & ~to[toOffset + w]) != 0) {
+						to[toOffset + w] |= bits;
+						changed = true;
+					}
+				}
+				return changed;
+			}
+			int stride = 1 << (c - 6);
+			for (int w = 0; w < words; w++) {
+				if ((w & stride) != 0)
+					continue;
+				long bits = from[fromOffset + w];
+				if ((bits & ~to[toOffset + w + stride]) != 0) {
+					to[toOffset + w + stride] |= bits;
+					changed = true;
+				}
+			}
+			return changed;
+		}
+
+		private boolean has(long[] table, int x, int set) {
+			return (table[x * words + (set >>> 6)] & (1L << set)) != 0;
+		}
+
+		/* Rebuilds the path backwards from its last inner vertex */
+		private int[] walkBack(int x, int set) {
+			int[] path = new int[people];
+			path[0] = source;
+			path[people - 1] = target;
+			for (int i = colours - 1; i >= 0; i--) {
+				int v = candidates[x];
+				path[i + 1] = v;
+				if (i == 0)
+					break;
+				set ^= 1 << colour[x];
+				for (int e = graph.start(v); e < graph.end(v); e++) {
+					int y = localIndex[graph.target(e)];
+					if (y >= 0 && has(sets[i - 1], y, set)) {
+						x = y;
+						break;
+					}
+				}
+			}
+			return path;
+		}
+	}
+}
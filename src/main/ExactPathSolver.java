@@ -0,0 +1,261 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exact longest simple path between two people inside a small set of
+ * vertices, by dynamic programming over subsets (Held–Karp style).
+ *
+ * Source and target are left out of the subsets, so with m inner vertices
+ * reach[S] is an m-bit set: the vertices w of S such that some simple path
+ * from the source visits exactly S and ends at w. w is in reach[S] when S is
+ * {w} and w is a friend of the source, or when reach[S - w] holds a friend of
+ * w. The longest path is the largest S whose reach holds a friend of the
+ * target, plus the two endpoints.
+ *
+ * Every subset only reads subsets with one element less, so the subsets of
+ * one size (a layer) are independent of each other. In parallel mode the
+ * layers are filled in order, each one on a {@link ForkJoinPool}, split on
+ * the high bits and enumerated with Gosper's hack below the split. The table
+ * takes 4·2^m bytes, which is what bounds the problems it accepts.
+ */
+public class ExactPathSolver {
+
+	/* Largest problem accepted whatever the heap: 2^24 entries, 64 MB */
+	private static final int MAX_VERTICES = 26;
+	/* Subsets handed to a single fork/join task before it stops splitting */
+	private static final int GRAIN = 1 << 12;
+	/* Below this many inner vertices a parallel layer costs more than it saves */
+	private static final int PARALLEL_INNER = 14;
+	/* Time per subset and inner vertex on one core, measured at 1.6-2.7 ns and rounded up */
+	private static final long STEP_NANOS = 4;
+
+	private static final int[][] binomial = new int[MAX_VERTICES + 1][MAX_VERTICES + 1];
+	static {
+		for (int n = 0; n <= MAX_VERTICES; n++) {
+			binomial[n][0] = 1;
+			for (int k = 1; k <= n; k++)
+				binomial[n][k] = binomial[n - 1][k - 1] + ((k < n) ? binomial[n - 1][k] : 0);
+		}
+	}
+
+	private final FriendshipGraph graph;
+	private final int capacity;
+
+	private final int[] localIndex;
+	private final int[] stamp;
+	private int epoch;
+
+	private final int[] members = new int[MAX_VERTICES];
+	private final int[] adjacency = new int[MAX_VERTICES];
+	private int sourceFriends;
+	private int targetFriends;
+	private int[] reach = new int[1];
+
+	private final AtomicInteger witness = new AtomicInteger();
+	private final AtomicBoolean alive = new AtomicBoolean();
+
+	/** A solver for problems of up to {@link #maxVertices()} people. */
+	public ExactPathSolver(FriendshipGraph graph) {
+		this(graph, maxVertices());
+	}
+
+	public ExactPathSolver(FriendshipGraph graph, int capacity) {
+		this.graph = graph;
+		this.capacity = Math.max(2, Math.min(capacity, MAX_VERTICES));
+		this.localIndex = new int[graph.size()];
+		this.stamp = new int[graph.size()];
+	}
+
+	/** Largest number of people in a problem whose table fits in a quarter of the heap. */
+	public static int maxVertices() {
+		long budget = Runtime.getRuntime().maxMemory() / 4;
+		int k = MAX_VERTICES;
+		while (k > 2 && (4L << (k - 2)) > budget)
+			k--;
+		return k;
+	}
+
+	/**
+	 * Rough time {@link #solve} takes for a problem of {@code people} people
+	 * on {@code threads} threads: the table has 2^m subsets of the m inner
+	 * vertices, and each subset looks at all m of them.
+	 */
+	public static long estimatedNanos(int people, int threads) {
+		int m = Math.max(0, people - 2);
+		int cores = (threads > 1 && m >= PARALLEL_INNER) ? threads : 1;
+		return STEP_NANOS * m * (1L << m) / cores;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Writes a longest simple path from source to target that only uses
+	 * {@code vertices[0..count)} (which hold both of them) into {@code out}
+	 * and returns its number of people, or 0 if there is no such path.
+	 * {@code threads} above 1 fills the table on that many cores.
+	 */
+	public int solve(int[] vertices, int count, int source, int target, int threads, int[] out) {
+		if (count > capacity)
+			throw new IllegalArgumentException(count + " people, this solver takes at most " + capacity);
+		if (source == target) {
+			out[0] = source;
+			return 1;
+		}
+
+		// ---- Index the inner vertices and their friendships as bitmasks ----
+		if (++epoch == 0) {
+			Arrays.fill(stamp, 0);
+			epoch = 1;
+		}
+		int m = 0;
+		for (int i = 0; i < count; i++) {
+			int v = vertices[i];
+			if (v == source || v == target || stamp[v] == epoch)
+				continue;
+			stamp[v] = epoch;
+			localIndex[v] = m;
+			members[m++] = v;
+		}
+		sourceFriends = friendsOf(source);
+		targetFriends = friendsOf(target);
+		for (int w = 0; w < m; w++)
+			adjacency[w] = friendsOf(members[w]);
+
+		int full = 1 << m;
+		if (reach.length < full)
+			reach = new int[full];
+		reach[0] = 0;
+
+		int bestMask = graph.areFriends(source, target) ? 0 : -1;
+		if (threads > 1 && m >= PARALLEL_INNER)
+			bestMask = Math.max(bestMask, fillLayers(m, threads));
+		else
+			bestMask = Math.max(bestMask, fillInOrder(full));
+		if (bestMask < 0)
+			return 0;
+
+		// ---- Walk back from the target through the table ----
+		int length = Integer.bitCount(bestMask) + 2;
+		int position = length - 1;
+		out[position--] = target;
+		int allowed = targetFriends;
+		for (int mask = bestMask; mask != 0;) {
+			int w = Integer.numberOfTrailingZeros(reach[mask] & allowed);
+			out[position--] = members[w];
+			mask ^= 1 << w;
+			allowed = adjacency[w];
+		}
+		out[position] = source;
+		return length;
+	}
+
+	/* Inner vertices among v's friends, as a bitmask */
+	private int friendsOf(int v) {
+		int mask = 0;
+		for (int e = graph.start(v); e < graph.end(v); e++) {
+			int x = graph.target(e);
+			if (stamp[x] == epoch)
+				mask |= 1 << localIndex[x];
+		}
+		return mask;
+	}
+
+	/* reach[mask], from the subsets one element smaller */
+	private int fill(int mask) {
+		int r = 0;
+		for (int bits = mask; bits != 0; bits &= bits - 1) {
+			int bit = bits & -bits;
+			int rest = mask ^ bit;
+			boolean reached = (rest == 0) ? (sourceFriends & bit) != 0
+					: (reach[rest] & adjacency[Integer.numberOfTrailingZeros(bit)]) != 0;
+			if (reached)
+				r |= bit;
+		}
+		reach[mask] = r;
+		return r;
+	}
+
+	/* Sequential: numeric order visits every subset after its own subsets */
+	private int fillInOrder(int full) {
+		int bestMask = -1;
+		int bestSize = -1;
+		for (int mask = 1; mask < full; mask++) {
+			if ((fill(mask) & targetFriends) != 0 && Integer.bitCount(mask) > bestSize) {
+				bestSize = Integer.bitCount(mask);
+				bestMask = mask;
+			}
+		}
+		return bestMask;
+	}
+
+	/* Parallel: one fork/join pass per layer, stopping at the first empty one */
+	private int fillLayers(int m, int threads) {
+		int bestMask = -1;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int layer = 1; layer <= m; layer++) {
+				witness.set(-1);
+				alive.set(false);
+				pool.invoke(new Layer(0, layer, m));
+				if (witness.get() >= 0)
+					bestMask = witness.get();
+				if (!alive.get())
+					break;
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return bestMask;
+	}
+
+	/* The subsets prefix | low, for every low of `remaining` bits below bit `width` */
+	private class Layer extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int prefix;
+		private final int remaining;
+		private final int width;
+
+		Layer(int prefix, int remaining, int width) {
+			this.prefix = prefix;
+			this.remaining = remaining;
+			this.width = width;
+		}
+
+		@Override
+		protected void compute() {
+			if (remaining > 0 && remaining < width && binomial[width][remaining] > GRAIN) {
+				int high = 1 << (width - 1);
+				invokeAll(new Layer(prefix | high, remaining - 1, width - 1), new Layer(prefix, remaining, width - 1));
+				return;
+			}
+
+			boolean any = false;
+			int found = -1;
+			int end = 1 << width;
+			for (int low = (1 << remaining) - 1; low < end;) {
+				int r = fill(prefix | low);
+				any |= r != 0;
+				if ((r & targetFriends) != 0)
+					found = prefix | low;
+				if (low == 0)
+					break;
+				// Gosper's hack: next integer with the same number of bits
+				int lowest = low & -low;
+				int ripple = low + lowest;
+				low = (((ripple ^ low) >>> 2) / lowest) | ripple;
+			}
+			if (any)
+				alive.set(true);
+			if (found >= 0)
+				witness.compareAndSet(-1, found);
+		}
+	}
+}
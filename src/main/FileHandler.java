@@ -2,16 +2,13 @@ package main;
 
 import java.awt.Window;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
@@ -22,68 +19,33 @@ public class FileHandler {
 	private static List<File> selectedPeopleFiles = new ArrayList<File>();
 	private static List<File> selectedFriendFiles = new ArrayList<File>();
 
+	/* Lines of a reject log shown on the console; the rest are only in the log file */
+	private static final int REJECTS_SHOWN = 5;
+
+	private final ChunkedFileParser parser = new ChunkedFileParser(Runtime.getRuntime().availableProcessors());
+
 	public FileHandler() {
 	}
 
-	public void loadPeople(Map<String, Person> people) {
+	public void loadPeople(PeopleStore people) {
 
 		if (selectedPeopleFiles.isEmpty()) {
 			selectedPeopleFiles = selectFiles("people");
 		}
 
-		for (File peopleFile : selectedPeopleFiles) {
-			try (Scanner input = new Scanner(peopleFile)) {
-				if (input.hasNextLine()) {
-					input.nextLine();
-				}
-				while (input.hasNextLine()) {
-					String line = input.nextLine().trim();
-					if (line.isEmpty()) {
-						continue;
-					}
-					Person person = parsePerson(line);
-					people.putIfAbsent(person.getIdperson(), person);
-				}
+		// all files are parsed at once; putIfAbsent in file order keeps the first of a repeated id
+		RejectLog rejects = new RejectLog();
+		parser.parsePeople(paths(selectedPeopleFiles), rejects,
+				person -> people.putIfAbsent(person.getIdperson(), person));
+		people.trimToSize();
+		report(rejects, "rejected-people.log");
 
-			} catch (Exception e) {
-				System.err.println("Error reading file " + peopleFile.getName() + ": " + e.getMessage());
-			}
-		}
+		GraphStore.publish(people);
 	}
 
-	private Person parsePerson(String rawPerson) {
-		String[] parts = rawPerson.split(",", -1);
-
-		if (parts.length < 11) {
-			throw new IllegalArgumentException("Invalid person line (expected 11 fields): " + rawPerson);
-		}
-
-		Person person = new Person(parts[0].trim());
-		person.setName(parts[1].trim());
-		person.setLastname(parts[2].trim());
-		person.setBirthdate(parts[3].trim());
-		person.setGender(parts[4].trim());
-		person.setBirthplace(parts[5].trim());
-		person.setHome(parts[6].trim());
-		person.setStudiedAt(splitListField(parts[7]));
-		person.setWorkplaces(splitListField(parts[8]));
-		person.setFilms(splitListField(parts[9]));
-		person.setGroupcode(parts[10].trim());
-
-		return person;
-	}
+	public void loadFriendships(PeopleStore people) {
 
-	private List<String> splitListField(String field) {
-		field = field.trim();
-		if (field.isEmpty()) {
-			return Collections.emptyList();
-		}
-		return Arrays.stream(field.split(";")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
-	}
-
-	public void loadFriendships(Map<String, Person> people) {
-
-		if (selectedPeopleFiles.isEmpty()) {
+		if (selectedPeopleFiles.isEmpty() && people.isEmpty()) {
 			System.out.println("You cannot load friendships without people. Loading people first...");
 			loadPeople(people);
 		}
@@ -92,61 +54,77 @@ public class FileHandler {
 			selectedFriendFiles = selectFiles("friends");
 		}
 
-		// adjacency map: id -> set of friend ids
-		Map<String, Set<String>> adjacency = new HashMap<>();
-
-		// ---- Parse all friendship files ----
-		for (File friendFile : selectedFriendFiles) {
-			try (Scanner input = new Scanner(friendFile)) {
-
-				if (input.hasNext()) {
-					input.nextLine(); // skip header
-				}
-
-				while (input.hasNextLine()) {
-					String line = input.nextLine().trim();
-					if (line.isEmpty())
-						continue;
-
-					String[] parts = line.split(",");
-					if (parts.length < 2)
-						continue;
-
-					String a = parts[0].trim();
-					String b = parts[1].trim();
+		// the friendships are read straight into edge keys of the current graph
+		FriendshipGraph base = GraphStore.current();
+		if (!base.isGraphOf(people)) {
+			base = GraphStore.publish(people);
+		}
 
-					// only accept friendships between people that actually exist
-					if (!people.containsKey(a) || !people.containsKey(b)) {
-						// Optional debug:
-						// System.out.println("Skipping unknown IDs: " + a + " or " + b);
-						continue;
-					}
+		RejectLog rejects = new RejectLog();
+		long[][] edges = parser.parseEdges(paths(selectedFriendFiles), base, rejects);
+		report(rejects, "rejected-friends.log");
 
-					// Add b to a's set
-					adjacency.computeIfAbsent(a, k -> new HashSet<>()).add(b);
+		try {
+			GraphStore.publish(people, base, edges);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Friendships not loaded: " + e.getMessage());
+			return;
+		}
+		System.out.println("Friendships loaded successfully.");
+	}
 
-					// Add a to b's set (undirected friendship)
-					adjacency.computeIfAbsent(b, k -> new HashSet<>()).add(a);
-				}
+	/** Saves the loaded people and friendships to a binary snapshot. */
+	public void saveSnapshot(PeopleStore people, Path file) {
+		FriendshipGraph graph = GraphStore.current();
+		if (!graph.isGraphOf(people)) {
+			graph = GraphStore.publish(people);
+		}
+		try {
+			NetworkSnapshot.write(people, graph, file);
+			System.out.println("Saved " + graph.size() + " people and " + graph.edgeCount() + " friendships to " + file);
+		} catch (IOException e) {
+			System.err.println("Error writing snapshot " + file + ": " + e.getMessage());
+		}
+	}
 
-			} catch (Exception e) {
-				System.err.println("Error while reading friendships: " + e.getMessage());
-			}
+	/** Replaces the loaded people and friendships with those of a snapshot. */
+	public void openSnapshot(PeopleStore people, Path file) {
+		try {
+			NetworkSnapshot snapshot = NetworkSnapshot.read(file);
+			people.replaceWith(snapshot.getPeople());
+			FriendshipGraph graph = GraphStore.publish(people, snapshot.getGraph());
+			System.out.println("Opened " + graph.size() + " people and " + graph.edgeCount() + " friendships from "
+					+ file);
+		} catch (IOException e) {
+			System.err.println("Error reading snapshot " + file + ": " + e.getMessage());
 		}
+	}
 
-		// ---- Apply adjacency to Person objects ----
-		for (Map.Entry<String, Set<String>> entry : adjacency.entrySet()) {
-			String id = entry.getKey();
-			Set<String> friendsSet = entry.getValue();
+	private static List<Path> paths(List<File> files) {
+		List<Path> paths = new ArrayList<>();
+		for (File file : files)
+			paths.add(file.toPath());
+		return paths;
+	}
 
-			Person p = people.get(id);
-			if (p != null) {
-				// Person.friends is already a Set<String>, so this is safe
-				p.getFriends().addAll(friendsSet);
-			}
+	/* Unreadable files are shown; rejected lines are counted, a few shown and all saved to logName */
+	private static void report(RejectLog rejects, String logName) {
+		long lines = rejects.rejectedLines();
+		int shown = 0;
+		for (RejectLog.Entry entry : rejects.getEntries()) {
+			if (entry.getLine() == 0)
+				System.err.println("Error reading file " + entry.getFile() + ": " + entry.getReason());
+			else if (shown++ < REJECTS_SHOWN)
+				System.err.println("Skipped " + entry);
+		}
+		if (lines == 0)
+			return;
+		try {
+			rejects.write(Paths.get(logName));
+			System.err.println(lines + " malformed line(s) skipped, listed in " + logName);
+		} catch (IOException e) {
+			System.err.println(lines + " malformed line(s) skipped; could not write " + logName + ": " + e.getMessage());
 		}
-
-		System.out.println("Friendships loaded successfully.");
 	}
 
 	public List<File> selectFiles(String restriction) {
@@ -0,0 +1,460 @@
+package main;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable friendship graph in compressed sparse row (CSR) form.
+ *
+ * Every person id is mapped once to a dense int index. The friends of vertex
+ * {@code v} are {@code targets[offsets[v]] .. targets[offsets[v + 1] - 1]},
+ * sorted ascending, so the algorithms can walk adjacency without hashing
+ * Strings on every edge.
+ */
+public class FriendshipGraph {
+
+	/* Largest adjacency array the VM reliably allocates */
+	private static final int MAX_TARGETS = Integer.MAX_VALUE - 8;
+
+	private final long version;
+	/* Vertex v is id v of the dictionary, for v below size() */
+	private final IdIndex ids;
+	private final int[] offsets;
+	private final int[] targets;
+
+	FriendshipGraph(long version, IdIndex ids, int[] offsets, int[] targets) {
+		this.version = version;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	public static FriendshipGraph fromPeople(Map<String, Person> people) {
+		return fromPeople(people, 0);
+	}
+
+	public static FriendshipGraph fromPeople(Map<String, Person> people, long version) {
+		int n = people.size();
+		IdIndex ids = new IdIndex(n);
+		for (String id : people.keySet())
+			ids.add(id);
+
+		// ---- Count degrees (friends that are not loaded are ignored) ----
+		int[] offsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			Set<String> friends = people.get(ids.idOf(v)).getFriends();
+			int degree = 0;
+			if (friends != null) {
+				for (String friend : friends) {
+					if (ids.indexOf(friend) >= 0)
+						degree++;
+				}
+			}
+			offsets[v + 1] = offsets[v] + degree;
+		}
+
+		// ---- Fill and sort every adjacency range ----
+		int[] targets = new int[offsets[n]];
+		for (int v = 0; v < n; v++) {
+			Set<String> friends = people.get(ids.idOf(v)).getFriends();
+			if (friends == null)
+				continue;
+			int pos = offsets[v];
+			for (String friend : friends) {
+				int w = ids.indexOf(friend);
+				if (w >= 0)
+					targets[pos++] = w;
+			}
+			Arrays.sort(targets, offsets[v], offsets[v + 1]);
+		}
+
+		return new FriendshipGraph(version, ids, offsets, targets);
+	}
+
+	/**
+	 * Builds a graph from an undirected edge list given as parallel arrays of
+	 * indices into {@code ids}. Self loops and duplicate edges are dropped.
+	 */
+	public static FriendshipGraph fromEdges(String[] ids, int[] from, int[] to, int count) {
+		int n = ids.length;
+		int[] offsets = new int[n + 1];
+		for (int i = 0; i < count; i++) {
+			if (from[i] == to[i])
+				continue;
+			offsets[from[i] + 1]++;
+			offsets[to[i] + 1]++;
+		}
+		for (int v = 0; v < n; v++)
+			offsets[v + 1] += offsets[v];
+
+		int[] targets = new int[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for (int i = 0; i < count; i++) {
+			if (from[i] == to[i])
+				continue;
+			targets[fill[from[i]]++] = to[i];
+			targets[fill[to[i]]++] = from[i];
+		}
+
+		// ---- Sort every range and squeeze out duplicates ----
+		int write = 0;
+		for (int v = 0; v < n; v++) {
+			int begin = offsets[v], end = offsets[v + 1];
+			Arrays.sort(targets, begin, end);
+			offsets[v] = write;
+			for (int e = begin; e < end; e++) {
+				if (e == begin || targets[e] != targets[e - 1])
+					targets[write++] = targets[e];
+			}
+		}
+		offsets[n] = write;
+
+		return new FriendshipGraph(0, new IdIndex(ids), offsets, Arrays.copyOf(targets, write));
+	}
+
+	/** This graph under another snapshot version; the arrays are shared. */
+	public FriendshipGraph withVersion(long version) {
+		return new FriendshipGraph(version, ids, offsets, targets);
+	}
+
+	/**
+	 * The graph of everyone in {@code people}, vertex v being row v, with
+	 * the friendships of {@code previous} among them. When {@code previous}
+	 * is already a graph of these people (of their first rows, if more were
+	 * added since), its adjacency is reused as is.
+	 */
+	public static FriendshipGraph forStore(PeopleStore people, FriendshipGraph previous, long version) {
+		int n = people.size();
+		if (previous.ids == people.ids()) {
+			int[] offsets = Arrays.copyOf(previous.offsets, n + 1);
+			Arrays.fill(offsets, previous.offsets.length, n + 1, previous.targets.length);
+			return new FriendshipGraph(version, people.ids(), offsets, previous.targets);
+		}
+
+		FriendshipGraph empty = new FriendshipGraph(version, people.ids(), new int[n + 1], new int[0]);
+		long[] keys = new long[previous.targets.length / 2];
+		int count = 0;
+		for (int v = 0; v < previous.size(); v++) {
+			int a = people.ids().indexOf(previous.idOf(v), n);
+			for (int e = previous.offsets[v]; e < previous.offsets[v + 1]; e++) {
+				int w = previous.targets[e];
+				int b = (w > v && a >= 0) ? people.ids().indexOf(previous.idOf(w), n) : -1;
+				if (b >= 0)
+					keys[count++] = edgeKey(a, b);
+			}
+		}
+		return empty.withEdges(Arrays.copyOf(keys, count), version);
+	}
+
+	/** Key of the friendship between vertices a and b: the smaller index in the high half. */
+	public static long edgeKey(int a, int b) {
+		return (a < b) ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	/**
+	 * A graph of the same people with the friendships of this one plus the
+	 * {@link #edgeKey edge keys} in {@code keys}, which is sorted in place.
+	 */
+	public FriendshipGraph withEdges(long[] keys, long version) {
+		Arrays.parallelSort(keys);
+		return withEdges(new long[][] { keys }, version);
+	}
+
+	/**
+	 * A graph of the same people with the friendships of this one plus the
+	 * {@link #edgeKey edge keys} in {@code runs}, each run sorted ascending.
+	 *
+	 * The runs and this graph's friendships are merged in key order twice,
+	 * once to count the degrees and once to fill the adjacency, dropping
+	 * duplicates and self loops on the way. Every vertex gets its smaller
+	 * neighbours first, then the larger ones, both ascending, so the ranges
+	 * come out sorted without a per-vertex sort, any hashing or a copy of the
+	 * keys. The second pass sets each run in {@code runs} to null once it is
+	 * spent, so the runs are released as the new adjacency fills up.
+	 *
+	 * @throws IllegalArgumentException if the friendships do not fit in one
+	 *         adjacency array
+	 */
+	public FriendshipGraph withEdges(long[][] runs, long version) {
+		int n = size();
+		int[] newOffsets = new int[n + 1];
+		long m = 0;
+		KeyMerge merge = new KeyMerge(runs, false);
+		for (long key = merge.next(); key >= 0; key = merge.next()) {
+			newOffsets[(int) (key >>> 32) + 1]++;
+			newOffsets[(int) key + 1]++;
+			m++;
+		}
+		if (m > MAX_TARGETS / 2)
+			throw new IllegalArgumentException(m + " friendships, a graph holds at most " + MAX_TARGETS / 2);
+		for (int v = 0; v < n; v++)
+			newOffsets[v + 1] += newOffsets[v];
+
+		int[] newTargets = new int[(int) (2 * m)];
+		int[] fill = Arrays.copyOf(newOffsets, n);
+		merge = new KeyMerge(runs, true);
+		for (long key = merge.next(); key >= 0; key = merge.next()) {
+			int a = (int) (key >>> 32), b = (int) key;
+			newTargets[fill[a]++] = b;
+			newTargets[fill[b]++] = a;
+		}
+		return new FriendshipGraph(version, ids, newOffsets, newTargets);
+	}
+
+	/*
+	 * The distinct keys of sorted runs and of this graph's friendships, in
+	 * order, without self loops. The sources sit in a binary heap by their
+	 * current key; source runs.length walks this graph's adjacency.
+	 */
+	private final class KeyMerge {
+		private final long[][] runs;
+		private final boolean release;
+		private final int[] position;
+		private final long[] head;
+		private final int[] heap;
+		private int live;
+		private int vertex;
+		private int edge;
+		private long last = -1;
+
+		KeyMerge(long[][] runs, boolean release) {
+			this.runs = runs;
+			this.release = release;
+			position = new int[runs.length];
+			head = new long[runs.length + 1];
+			heap = new int[runs.length + 1];
+			for (int source = 0; source <= runs.length; source++) {
+				if (advance(source))
+					heap[live++] = source;
+			}
+			for (int i = live / 2 - 1; i >= 0; i--)
+				siftDown(i);
+		}
+
+		/* The next key, or -1 once every source is spent */
+		long next() {
+			while (live > 0) {
+				int source = heap[0];
+				long key = head[source];
+				if (!advance(source))
+					heap[0] = heap[--live];
+				siftDown(0);
+				if (key != last && (int) (key >>> 32) != (int) key) {
+					last = key;
+					return key;
+				}
+			}
+			return -1;
+		}
+
+		/* Moves a source to its next key; false once it is spent */
+		private boolean advance(int source) {
+			if (source < runs.length) {
+				long[] run = runs[source];
+				if (position[source] < run.length) {
+					head[source] = run[position[source]++];
+					return true;
+				}
+				if (release)
+					runs[source] = null;
+				return false;
+			}
+			while (vertex < size()) {
+				if (edge == offsets[vertex + 1]) {
+					vertex++;
+				} else if (targets[edge++] > vertex) {
+					head[source] = edgeKey(vertex, targets[edge - 1]);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void siftDown(int i) {
+			if (i >= live)
+				return;
+			int source = heap[i];
+			while (2 * i + 1 < live) {
+				int child = 2 * i + 1;
+				if (child + 1 < live && head[heap[child + 1]] < head[heap[child]])
+					child++;
+				if (head[heap[child]] >= head[source])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = source;
+		}
+	}
+
+	/**
+	 * Subgraph induced by {@code vertices}; vertex i of the result is
+	 * {@code vertices[i]} here and keeps its id. {@code scratch} must be an
+	 * array of {@link #size()} entries all set to -1, and is left that way.
+	 */
+	public FriendshipGraph induced(int[] vertices, int[] scratch) {
+		int k = vertices.length;
+		IdIndex subIds = new IdIndex(k);
+		for (int i = 0; i < k; i++) {
+			scratch[vertices[i]] = i;
+			subIds.add(idOf(vertices[i]));
+		}
+
+		int[] subOffsets = new int[k + 1];
+		for (int i = 0; i < k; i++) {
+			int v = vertices[i];
+			int degree = 0;
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if (scratch[targets[e]] >= 0)
+					degree++;
+			}
+			subOffsets[i + 1] = subOffsets[i] + degree;
+		}
+		int[] subTargets = new int[subOffsets[k]];
+		for (int i = 0; i < k; i++) {
+			int v = vertices[i];
+			int pos = subOffsets[i];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				int local = scratch[targets[e]];
+				if (local >= 0)
+					subTargets[pos++] = local;
+			}
+			Arrays.sort(subTargets, subOffsets[i], subOffsets[i + 1]);
+		}
+
+		for (int v : vertices)
+			scratch[v] = -1;
+		return new FriendshipGraph(version, subIds, subOffsets, subTargets);
+	}
+
+	/** Snapshot version assigned by {@link GraphStore}, 0 for standalone graphs. */
+	public long version() {
+		return version;
+	}
+
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/** Number of undirected friendships. */
+	public long edgeCount() {
+		return targets.length / 2;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean hasEdges() {
+		return targets.length > 0;
+	}
+
+	/** Returns the dense index of a person id, or -1 if it is not in the graph. */
+	public int indexOf(String id) {
+		return ids.indexOf(id, size());
+	}
+
+	/** Index of the id in {@code input[from..to)}, as UTF-8, or -1 if it is not in the graph. */
+	public int indexOf(byte[] input, int from, int to) {
+		return ids.indexOf(input, from, to, size());
+	}
+
+	public String idOf(int v) {
+		return ids.idOf(v);
+	}
+
+	/* The id dictionary, shared with the people store the graph was built for */
+	IdIndex ids() {
+		return ids;
+	}
+
+	/** Whether vertex v is row v of {@code people}, for every one of them. */
+	public boolean isGraphOf(PeopleStore people) {
+		return ids == people.ids() && size() == people.size();
+	}
+
+	public int degree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/** First position of v's adjacency in {@link #target(int)}. */
+	public int start(int v) {
+		return offsets[v];
+	}
+
+	/** Position after the last neighbor of v. */
+	public int end(int v) {
+		return offsets[v + 1];
+	}
+
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	public boolean areFriends(int a, int b) {
+		return Arrays.binarySearch(targets, offsets[a], offsets[a + 1], b) >= 0;
+	}
+
+	/** Read-only view of the ids of v's friends, in index order. */
+	public Set<String> friendsOf(int v) {
+		return new FriendSet(v);
+	}
+
+	private final class FriendSet extends AbstractSet<String> {
+		private final int v;
+
+		FriendSet(int v) {
+			this.v = v;
+		}
+
+		@Override
+		public int size() {
+			return degree(v);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			int w = (o instanceof String) ? indexOf((String) o) : -1;
+			return w >= 0 && areFriends(v, w);
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				private int edge = offsets[v];
+
+				@Override
+				public boolean hasNext() {
+					return edge < offsets[v + 1];
+				}
+
+				@Override
+				public String next() {
+					if (edge >= offsets[v + 1])
+						throw new NoSuchElementException();
+					return ids.idOf(targets[edge++]);
+				}
+			};
+		}
+	}
+
+	public List<String> toIds(int[] path, int length) {
+		List<String> result = new ArrayList<>(length);
+		for (int i = 0; i < length; i++)
+			result.add(ids.idOf(path[i]));
+		return result;
+	}
+
+	public List<Person> toPeople(int[] path, int length, Map<String, Person> people) {
+		List<Person> result = new ArrayList<>(length);
+		for (int i = 0; i < length; i++)
+			result.add(people.get(ids.idOf(path[i])));
+		return result;
+	}
+}
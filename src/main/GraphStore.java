@@ -0,0 +1,56 @@
+package main;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current friendship graph snapshot.
+ *
+ * The snapshot is rebuilt once when people or friendships finish loading and
+ * swapped in atomically, so every query reads the same immutable graph
+ * without copying it. Each rebuild gets a new, increasing version.
+ */
+public final class GraphStore {
+
+	private static final AtomicLong versions = new AtomicLong();
+	private static final AtomicReference<FriendshipGraph> current = new AtomicReference<>(
+			FriendshipGraph.fromPeople(Map.of(), 0));
+
+	private GraphStore() {
+	}
+
+	public static FriendshipGraph current() {
+		return current.get();
+	}
+
+	/**
+	 * Publishes the graph of everyone in {@code people}, keeping the
+	 * friendships already loaded among them (see {@link FriendshipGraph#forStore}).
+	 */
+	public static FriendshipGraph publish(PeopleStore people) {
+		return install(people, FriendshipGraph.forStore(people, current.get(), versions.incrementAndGet()));
+	}
+
+	/**
+	 * Publishes the people of {@code base}, which must be the graph of
+	 * {@code people}, with the friendships in the sorted runs of
+	 * {@code edgeKeys} added (see {@link FriendshipGraph#withEdges(long[][], long)}).
+	 * Nothing is published if they do not fit in one graph.
+	 */
+	public static FriendshipGraph publish(PeopleStore people, FriendshipGraph base, long[][] edgeKeys) {
+		return install(people, base.withEdges(edgeKeys, versions.incrementAndGet()));
+	}
+
+	/** Publishes a graph built elsewhere, such as a snapshot, for {@code people}. */
+	public static FriendshipGraph publish(PeopleStore people, FriendshipGraph graph) {
+		return install(people, graph.withVersion(versions.incrementAndGet()));
+	}
+
+	/* The people read their friends from the graph they were last published with */
+	private static FriendshipGraph install(PeopleStore people, FriendshipGraph graph) {
+		people.setGraph(graph);
+		current.set(graph);
+		return graph;
+	}
+}
@@ -0,0 +1,179 @@
+package main;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only dictionary of person ids: id i is stored once, as UTF-8 bytes,
+ * and found again from a String or straight from the bytes of an input
+ * buffer, without building a String for it.
+ *
+ * The ids are stored back to back in one byte array, and an open-addressing
+ * table holds a 32-bit hash of every id next to its index, so a lookup reads
+ * one slot and, only when the hashes agree, compares the bytes once. The
+ * people store and every friendship graph built from it share one
+ * dictionary; a graph only answers for the first {@code size} ids it was
+ * built with, so ids appended later do not leak into it. Appends are meant to
+ * happen while nothing else reads the dictionary, like the rest of loading.
+ * The columns of the store keep their values the same way, see
+ * {@link StringDictionary}.
+ */
+public class IdIndex {
+
+	private byte[] bytes;
+	private int[] starts;
+	private int size;
+	/* hash << 32 | (index + 1); 0 is an empty slot */
+	private long[] slots;
+	private int mask;
+
+	public IdIndex() {
+		this(16);
+	}
+
+	public IdIndex(int expected) {
+		bytes = new byte[Math.max(16, expected * 8)];
+		starts = new int[Math.max(16, expected) + 1];
+		resize(capacityFor(expected));
+	}
+
+	/** A dictionary of {@code ids} in order; a repeated id keeps its first index. */
+	public IdIndex(String[] ids) {
+		this(ids.length);
+		for (String id : ids)
+			add(id);
+	}
+
+	/** Rebuilds a dictionary saved with {@link #bytes()}, {@link #starts()} and {@link #slots()}. */
+	IdIndex(byte[] bytes, int[] starts, int size, long[] slots) {
+		if (Integer.bitCount(slots.length) != 1 || slots.length < 2 * size || starts.length < size + 1)
+			throw new IllegalArgumentException("Corrupt id dictionary");
+		for (long entry : slots) {
+			if ((int) entry < 0 || (int) entry > size)
+				throw new IllegalArgumentException("Corrupt id dictionary");
+		}
+		this.bytes = bytes;
+		this.starts = starts;
+		this.size = size;
+		this.slots = slots;
+		this.mask = slots.length - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Drops the room kept for more ids; the table stays as it is. */
+	public void trimToSize() {
+		bytes = Arrays.copyOf(bytes, starts[size]);
+		starts = Arrays.copyOf(starts, size + 1);
+	}
+
+	/** Index of {@code id}, appended first if it is new. */
+	public int add(String id) {
+		byte[] encoded = id.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(encoded, 0, encoded.length);
+		int found = find(encoded, 0, encoded.length, hash, size);
+		if (found >= 0)
+			return found;
+
+		if (2 * (size + 1) > slots.length)
+			resize(slots.length * 2);
+		if (size + 2 > starts.length)
+			starts = Arrays.copyOf(starts, starts.length * 2);
+		int end = starts[size] + encoded.length;
+		if (end > bytes.length)
+			bytes = Arrays.copyOf(bytes, Math.max(end, (int) Math.min(Integer.MAX_VALUE - 8, bytes.length * 2L)));
+		System.arraycopy(encoded, 0, bytes, starts[size], encoded.length);
+		starts[size + 1] = end;
+		insert(hash, size);
+		return size++;
+	}
+
+	public int indexOf(String id) {
+		return indexOf(id, size);
+	}
+
+	/** Index of {@code id} if it is one of the first {@code limit} ids, else -1. */
+	public int indexOf(String id, int limit) {
+		byte[] encoded = id.getBytes(StandardCharsets.UTF_8);
+		return find(encoded, 0, encoded.length, hash(encoded, 0, encoded.length), limit);
+	}
+
+	/** Index of the id in {@code input[from..to)} if it is one of the first {@code limit} ids, else -1. */
+	public int indexOf(byte[] input, int from, int to, int limit) {
+		return find(input, from, to, hash(input, from, to), limit);
+	}
+
+	public String idOf(int v) {
+		return new String(bytes, starts[v], starts[v + 1] - starts[v], StandardCharsets.UTF_8);
+	}
+
+	/* ---- Raw arrays, for snapshots ---- */
+
+	byte[] bytes() {
+		return bytes;
+	}
+
+	int[] starts() {
+		return starts;
+	}
+
+	long[] slots() {
+		return slots;
+	}
+
+	private int find(byte[] input, int from, int to, int hash, int limit) {
+		int length = to - from;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			long entry = slots[slot];
+			if (entry == 0)
+				return -1;
+			if ((int) (entry >>> 32) != hash)
+				continue;
+			int v = (int) entry - 1;
+			int start = starts[v];
+			if (v < limit && starts[v + 1] - start == length && equal(input, from, start, length))
+				return v;
+		}
+	}
+
+	private boolean equal(byte[] input, int from, int start, int length) {
+		for (int i = 0; i < length; i++) {
+			if (input[from + i] != bytes[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	private void insert(int hash, int v) {
+		int slot = hash & mask;
+		while (slots[slot] != 0)
+			slot = (slot + 1) & mask;
+		slots[slot] = ((long) hash << 32) | (v + 1);
+	}
+
+	/* At most half full */
+	private static int capacityFor(int ids) {
+		return Integer.highestOneBit(Math.max(2, ids) * 2 - 1) << 1;
+	}
+
+	private void resize(int capacity) {
+		slots = new long[capacity];
+		mask = capacity - 1;
+		for (int v = 0; v < size; v++)
+			insert(hash(bytes, starts[v], starts[v + 1]), v);
+	}
+
+	/* FNV-1a over the bytes with a final avalanche, so similar ids spread out */
+	private static int hash(byte[] input, int from, int to) {
+		int h = 0x811C9DC5;
+		for (int i = from; i < to; i++)
+			h = (h ^ input[i]) * 0x01000193;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,56 @@
+package main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index of one list field of a {@link PeopleStore}: for every
+ * value, ignoring case like {@link AttributeIndex}, the bitmap of the rows
+ * whose list contains it.
+ */
+class ListIndex {
+
+	private final StringDictionary dictionary;
+	private final Map<String, RowBitmap> bitmaps = new HashMap<>();
+	/* Bitmap of every dictionary code seen so far */
+	private RowBitmap[] byCode = new RowBitmap[16];
+
+	ListIndex(StringDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/** Rows with {@code value} in their list, ignoring case. */
+	RowBitmap lookup(String value) {
+		RowBitmap rows = (value == null) ? null : bitmaps.get(AttributeIndex.fold(value));
+		return (rows == null) ? new RowBitmap() : rows.snapshot();
+	}
+
+	/** Number of distinct values, ignoring case. */
+	int distinct() {
+		return bitmaps.size();
+	}
+
+	void add(int row, int code) {
+		bitmapOf(code).add(row);
+	}
+
+	void remove(int row, int code) {
+		bitmapOf(code).remove(row);
+	}
+
+	void trimToSize() {
+		for (RowBitmap rows : bitmaps.values())
+			rows.trimToSize();
+	}
+
+	private RowBitmap bitmapOf(int code) {
+		if (code >= byCode.length)
+			byCode = Arrays.copyOf(byCode, Math.max(code + 1, byCode.length * 2));
+		RowBitmap rows = byCode[code];
+		if (rows == null)
+			rows = byCode[code] = bitmaps.computeIfAbsent(AttributeIndex.fold(dictionary.decode(code)),
+					k -> new RowBitmap());
+		return rows;
+	}
+}
@@ -0,0 +1,59 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Incumbent of one longest-path run, shared by all of its worker threads.
+ *
+ * The best length is an atomic int that pruning code can read cheaply on
+ * every node; the best path itself is an immutable array published with a
+ * compare-and-set, so improvements never take a lock.
+ */
+public class LongestPathResult {
+
+	private final AtomicInteger bestLength = new AtomicInteger();
+	private final AtomicReference<int[]> bestPath = new AtomicReference<>(new int[0]);
+	private volatile boolean optimal;
+
+	/** Number of people on the best path found so far (0 if none). */
+	public int bestLength() {
+		return bestLength.get();
+	}
+
+	/** The best path found so far; the array is shared and must not be modified. */
+	public int[] bestPath() {
+		return bestPath.get();
+	}
+
+	/** Whether no path between the two people is longer than {@link #bestPath()}. */
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	/** Records that the search behind this result was exhaustive. */
+	public void markOptimal() {
+		optimal = true;
+	}
+
+	/**
+	 * Publishes {@code path[0..length)} if it is longer than the incumbent.
+	 * Returns true if it became the new incumbent.
+	 */
+	public boolean offer(int[] path, int length) {
+		if (length <= bestLength.get())
+			return false;
+
+		int[] candidate = Arrays.copyOf(path, length);
+		while (true) {
+			int[] current = bestPath.get();
+			if (current.length >= length)
+				return false;
+			if (bestPath.compareAndSet(current, candidate)) {
+				bestLength.accumulateAndGet(length, Math::max);
+				return true;
+			}
+		}
+	}
+}
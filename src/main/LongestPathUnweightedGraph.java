@@ -1,116 +1,243 @@
 package main;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Scanner;
-import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LongestPathUnweightedGraph {
-	private Map<String, Set<String>> graph;
-	private List<String> bestPath = new ArrayList<>();
-	private static final int duration = 10;
-	private static final int threadNum = 16;
-	private static final long slice = 750000000; // 200ms
-
-	private synchronized void updateBestPath(List<String> candidate) {
-		if (bestPath.isEmpty() || candidate.size() > bestPath.size()) {
-			bestPath = new ArrayList<>(candidate);
-		}
+	private FriendshipGraph graph;
+	private final int threads;
+	private final long budgetMillis;
+	private static final int splitDepth = 4;
+	private static final int surplusTasks = 2;
+	private static final double chainError = 0.01;
+	private static final String defaultCheckpoint = "longest-path.ckpt";
+	private static final long checkpointMillis = 30_000;
+
+	/* One search engine per worker thread, reused by every subtree it runs */
+	private final ThreadLocal<PathSearchEngine> engines;
+	private ExactPathSolver exact;
+	private volatile NeighbourOrder neighbourOrder = NeighbourOrder.DEGREE;
+
+	public LongestPathUnweightedGraph(FriendshipGraph graph) {
+		this(graph, Runtime.getRuntime().availableProcessors(), TimeUnit.SECONDS.toMillis(10));
 	}
 
-	public LongestPathUnweightedGraph(Map<String, Set<String>> graph) {
+	public LongestPathUnweightedGraph(FriendshipGraph graph, int threads, long budgetMillis) {
 		this.graph = graph;
+		this.threads = Math.max(1, threads);
+		this.budgetMillis = budgetMillis;
+		this.engines = ThreadLocal.withInitial(() -> {
+			PathSearchEngine engine = new PathSearchEngine(graph);
+			engine.setOrder(neighbourOrder);
+			return engine;
+		});
+	}
+
+	public NeighbourOrder getNeighbourOrder() {
+		return neighbourOrder;
+	}
+
+	/** Child order used by options 4 and 5; set it before searching. */
+	public void setNeighbourOrder(NeighbourOrder neighbourOrder) {
+		this.neighbourOrder = neighbourOrder;
 	}
 
-	public void findLongestPath() {
+	/**
+	 * Asks for an algorithm and two people, runs the search and prints the
+	 * result. Returns the result of this run, or null if nothing was searched.
+	 */
+	public LongestPathResult findLongestPath() {
 		try {
 			int option = chooseOption();
-			String[] ids = choosePeople();
+			int[] ids = choosePeople();
 			if (ids == null)
-				return;
-
-			String source = ids[0], target = ids[1];
-			Map<String, String> dfsParents = new HashMap<>();
-
-			switch (option) {
-			case 1:
-				dfs(source, target, null, dfsParents);
-				reconstructPathWithMap(dfsParents, target);
-				break;
-			case 2:
-				runInParallel(threadNum, () -> {
-					long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
-
-					Set<String> onPath = new HashSet<>();
-					List<String> currentPath = new ArrayList<>();
-
-					dfsBacktracking(source, target, onPath, currentPath, deadline);
-				});
-				printPath(bestPath);
-				break;
-			case 3:
-				runInParallel(threadNum, () -> {
-					long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+				return null;
+			if (option == 6)
+				return findChainOfLength(ids[0], ids[1]);
+			if (option == 8)
+				return searchWithCheckpoints(ids[0], ids[1]);
+
+			LongestPathResult result = findLongestPath(option, ids[0], ids[1]);
+			printPath(result.bestPath(), result.bestLength());
+			if (result.isOptimal())
+				System.out.println("There is no longer path between them.\n");
+			return result;
+		} catch (IllegalArgumentException e) {
+			// a limit of the chosen search, such as color coding's table size
+			System.out.println("Could not search: " + e.getMessage() + "\n");
+			return null;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
 
-					Set<String> onPath = new HashSet<>();
-					List<String> currentPath = new ArrayList<>();
+	}
 
-					dfsPruning(source, target, onPath, currentPath, deadline);
-				});
-				printPath(bestPath);
-				break;
-			case 4:
-				runInParallel(threadNum, () -> {
-					long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+	/**
+	 * Runs algorithm {@code option} (1-5 or 7, as in the menu) between two vertices.
+	 * Options 2-5 first cut the problem along the block-cut tree and search
+	 * each block of the chain between source and target on its own; a block
+	 * is solved exactly by {@link ExactPathSolver} when it is small enough
+	 * and the solver's estimated time fits the block's share of the budget.
+	 */
+	public LongestPathResult findLongestPath(int option, int source, int target) throws InterruptedException {
+		LongestPathResult best = new LongestPathResult();
+		int n = graph.size();
+
+		if (option == 1) {
+			int[] dfsParents = new int[n];
+			Arrays.fill(dfsParents, -1);
+			dfs(source, target, dfsParents);
+			reconstructPathWithParents(dfsParents, target, best);
+			return best;
+		}
 
-					Set<String> onPath = new HashSet<>();
-					List<String> currentPath = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		List<BlockCutTree.Segment> segments = BlockCutTree.chain(graph, source, target);
+		if (segments == null)
+			return best;
 
-					dfsHeuristics(source, target, onPath, currentPath, deadline);
-				});
-				printPath(bestPath);
-				break;
-			case 5:
-				runInParallel(threadNum, () -> {
-					long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
-					long time = System.nanoTime();
-
-					while (time < deadline) {
-						time = System.nanoTime();
-						long sliceDeadline = time + slice;
-						dfsRandomWithRestarts(source, target, new HashSet<>(), new ArrayList<>(), deadline,
-								sliceDeadline, new Random(time));
+		// ---- Solve every block between its articulation points, then stitch ----
+		int remainingSize = 0;
+		for (BlockCutTree.Segment segment : segments) {
+			if (!segment.isBridge())
+				remainingSize += segment.getVertices().length;
+		}
+		int[] scratch = null;
+		int[] stitched = new int[n];
+		int length = 0;
+		boolean optimal = true;
+
+		for (BlockCutTree.Segment segment : segments) {
+			int[] vertices = segment.getVertices();
+			int[] piece;
+			// each block gets a share of the time left, by size
+			long share = segment.isBridge() ? 0 : (deadline - System.nanoTime()) * vertices.length / remainingSize;
+			if (segment.isBridge()) {
+				piece = new int[] { segment.getEntry(), segment.getExit() };
+			} else if (vertices.length <= ExactPathSolver.maxVertices()
+					&& ExactPathSolver.estimatedNanos(vertices.length, threads) <= share) {
+				// the table fits in the block's share of the time, and its answer is optimal
+				if (exact == null)
+					exact = new ExactPathSolver(graph);
+				piece = new int[vertices.length];
+				piece = Arrays.copyOf(piece,
+						exact.solve(vertices, vertices.length, segment.getEntry(), segment.getExit(), threads, piece));
+				remainingSize -= vertices.length;
+			} else {
+				remainingSize -= vertices.length;
+				LongestPathResult part = new LongestPathResult();
+
+				if (vertices.length == n) {
+					optimal &= searchBlock(option, segment.getEntry(), segment.getExit(), System.nanoTime() + share,
+							part);
+					piece = Arrays.copyOf(part.bestPath(), part.bestLength());
+				} else {
+					if (scratch == null) {
+						scratch = new int[n];
+						Arrays.fill(scratch, -1);
 					}
-				});
-				printPath(bestPath);
-				break;
-			default:
-				break;
+					LongestPathUnweightedGraph block = new LongestPathUnweightedGraph(graph.induced(vertices, scratch),
+							threads, budgetMillis);
+					block.setNeighbourOrder(neighbourOrder);
+					optimal &= block.searchBlock(option, Arrays.binarySearch(vertices, segment.getEntry()),
+							Arrays.binarySearch(vertices, segment.getExit()), System.nanoTime() + share, part);
+					piece = new int[part.bestLength()];
+					for (int i = 0; i < piece.length; i++)
+						piece[i] = vertices[part.bestPath()[i]];
+				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+			for (int i = (length == 0) ? 0 : 1; i < piece.length; i++)
+				stitched[length++] = piece[i];
+		}
+		best.offer(stitched, length);
+		if (optimal)
+			best.markOptimal();
+		return best;
+	}
+
+	/*
+	 * Searches source-target paths with algorithm option until the deadline.
+	 * The incumbent starts from a shortest path so there is always an answer,
+	 * and a PathImprover keeps lengthening it on one more thread while the
+	 * search runs (the portfolio schedules its own local search). Returns
+	 * true if the search was exhaustive, i.e. the result is optimal.
+	 */
+	private boolean searchBlock(int option, int source, int target, long deadline, LongestPathResult best)
+			throws InterruptedException {
+		int[] shortest = new BidirectionalBfs(graph).shortestChain(source, target);
+		if (shortest == null)
+			return true;
+		best.offer(shortest, shortest.length);
+		if (option == 7)
+			return new PortfolioSearch(graph, threads).search(source, target, deadline, best);
+
+		PathImprover improver = new PathImprover(graph, System.nanoTime());
+		AtomicBoolean done = new AtomicBoolean();
+		Thread helper = new Thread(() -> improver.improve(best, deadline, done), "path-improver");
+		helper.setDaemon(true);
+		helper.start();
+		try {
+			return runStrategy(option, source, target, deadline, best);
+		} finally {
+			done.set(true);
+			helper.join();
 		}
+	}
 
+	private boolean runStrategy(int option, int source, int target, long deadline, LongestPathResult best)
+			throws InterruptedException {
+		switch (option) {
+		case 2:
+			return searchInParallel(SearchStrategy.BACKTRACKING, source, target, deadline, best);
+		case 3:
+			return searchInParallel(SearchStrategy.PRUNING, source, target, deadline, best);
+		case 4:
+			return searchInParallel(SearchStrategy.HEURISTICS, source, target, deadline, best);
+		case 5:
+			runInParallel(threads, () -> {
+				PathSearchEngine engine = engines.get();
+				int[] start = { source };
+				long slice = PortfolioSearch.INITIAL_RESTART;
+				long time = System.nanoTime();
+
+				// restarts run longer while they improve the path and shorter while they do not
+				while (time < deadline) {
+					int before = best.bestLength();
+					long sliceDeadline = Math.min(deadline, time + slice);
+					engine.explore(start, 1, target, SearchStrategy.RANDOMIZED, sliceDeadline, best,
+							new Random(time));
+					slice = PortfolioSearch.nextRestartSlice(slice, best.bestLength() > before);
+					time = System.nanoTime();
+				}
+			});
+			return false;
+		default:
+			return false;
+		}
 	}
 
-	private void printPath(List<String> path) {
-		System.out.println("Path size: " + path.size());
-		for (int i = 0; i < path.size(); i++) {
-			String id = path.get(i);
+	private void printPath(int[] path, int length) {
+		System.out.println("Path size: " + length);
+		for (int i = 0; i < length; i++) {
+			String id = graph.idOf(path[i]);
 			System.out.print("Id: " + id);
-			if (i < path.size() - 1) {
+			if (i < length - 1) {
 				System.out.print(" -> ");
 			}
 		}
@@ -118,9 +245,114 @@ public class LongestPathUnweightedGraph {
 
 	}
 
+	/*
+	 * Option 6: asks for a number of people and looks for a chain of exactly
+	 * that many between the two people with color coding.
+	 */
+	private LongestPathResult findChainOfLength(int source, int target) throws InterruptedException {
+		int people = chooseChainLength();
+		ColorCodingSearch search = new ColorCodingSearch(graph, threads);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		int[] path = search.findPath(source, target, people, chainError, deadline);
+
+		LongestPathResult result = new LongestPathResult();
+		if (path != null) {
+			result.offer(path, path.length);
+			printPath(path, path.length);
+		} else if (search.isRuledOut()) {
+			System.out.println("There is no chain of " + people + " people between them.\n");
+		} else if (search.getTrialsRun() < ColorCodingSearch.trials(people, chainError)) {
+			System.out.println("No chain of " + people + " people found before the time ran out ("
+					+ search.getTrialsRun() + " of " + ColorCodingSearch.trials(people, chainError) + " trials).\n");
+		} else {
+			System.out.println("There is no chain of " + people + " people between them (error probability "
+					+ chainError + ").\n");
+		}
+		return result;
+	}
+
+	/*
+	 * Option 8: an exhaustive search that saves its frontier to a file, so
+	 * a later run picks up where this one stopped.
+	 */
+	private LongestPathResult searchWithCheckpoints(int source, int target) throws Exception {
+		Scanner scanner = new Scanner(System.in);
+		System.out.print("Checkpoint file (press enter for " + defaultCheckpoint + "): ");
+		String name = scanner.nextLine().trim();
+		Path file = Paths.get(name.isEmpty() ? defaultCheckpoint : name);
+
+		SearchCheckpoint checkpoint = null;
+		if (Files.exists(file)) {
+			try {
+				SearchCheckpoint saved = SearchCheckpoint.read(graph, file);
+				if (saved.getSource() == source && saved.getTarget() == target) {
+					checkpoint = saved;
+					if (saved.isComplete())
+						System.out.println("That search has already finished.");
+					else
+						System.out.println("Resuming: best so far " + saved.getBest().bestLength() + " people, "
+								+ saved.getFrontier().size() + " subtrees left.");
+				} else {
+					System.out.println("That checkpoint is for " + graph.idOf(saved.getSource()) + " -> "
+							+ graph.idOf(saved.getTarget()) + ", starting a new search.");
+				}
+			} catch (IOException e) {
+				System.out.println("Could not resume (" + e.getMessage() + "), starting a new search.");
+			}
+		}
+		if (checkpoint == null)
+			checkpoint = CheckpointedSearch.start(graph, source, target, SearchStrategy.HEURISTICS);
+
+		long seconds = -1;
+		while (seconds < 0) {
+			System.out.print("Seconds to run (press enter for " + budgetMillis / 1000 + "): ");
+			String line = scanner.nextLine().trim();
+			if (line.isEmpty()) {
+				seconds = budgetMillis / 1000;
+			} else {
+				try {
+					seconds = Long.parseLong(line);
+				} catch (NumberFormatException e) {
+					// asked again below
+				}
+				if (seconds < 0)
+					System.out.println("Write a number of seconds");
+			}
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		new CheckpointedSearch(graph, threads, checkpointMillis).run(checkpoint, deadline, file);
+
+		LongestPathResult result = checkpoint.getBest();
+		printPath(result.bestPath(), result.bestLength());
+		if (checkpoint.isComplete())
+			System.out.println("Search finished, there is no longer path between them.\n");
+		else
+			System.out.println("Saved to " + file + ": " + checkpoint.getFrontier().size()
+					+ " subtrees left, no path has more than " + checkpoint.getUpperBound() + " people.\n");
+		return result;
+	}
+
+	private int chooseChainLength() {
+		Scanner scanner = new Scanner(System.in);
+		while (true) {
+			System.out.print("Number of people in the chain (2-" + ColorCodingSearch.MAX_PEOPLE + "): ");
+			try {
+				int people = scanner.nextInt();
+				if (people >= 2 && people <= ColorCodingSearch.MAX_PEOPLE)
+					return people;
+				System.out.println("Not a valid length");
+			} catch (InputMismatchException e) {
+				System.out.println("Write a valid length");
+				scanner.nextLine();
+			}
+		}
+	}
+
 	private int chooseOption() throws Exception {
 		Scanner scanner = new Scanner(System.in);
-		System.out.println("This code finds the longest path between two nodes in 5 seconds of execution. "
+		System.out.println("This code finds the longest path between two nodes in " + budgetMillis / 1000.0
+				+ " seconds of execution on " + threads + " threads. "
 				+ "In graphs with big clusters, the time complexity explodes and its not realistic to"
 				+ "find the actual longest path, however, we can try to give it the best chance it can have"
 				+ "in a reasonable amount of time \n");
@@ -133,9 +365,12 @@ public class LongestPathUnweightedGraph {
 				System.out.println("1. DFS (no time budget) \n" + "2. DFS with backtracking \n"
 						+ "3. DFS with backtracking and branch pruning\n"
 						+ "4. DFS with backtracking, branch pruning and simple heuristics\n"
-						+ "5. DFS with backtracking, branch pruning, heuristics, branch shuffling and random restarts\n");
+						+ "5. DFS with backtracking, branch pruning, heuristics, branch shuffling and random restarts\n"
+						+ "6. Color coding: is there a chain of exactly k people?\n"
+						+ "7. Portfolio: run all of the above and give the threads to whichever improves the path most\n"
+						+ "8. Exhaustive search with checkpoints, resumable across runs\n");
 				choice = scanner.nextInt();
-				if (choice < 1 || choice > 5) {
+				if (choice < 1 || choice > 8) {
 					System.out.println("Not a valid choice");
 					continue;
 				}
@@ -148,14 +383,13 @@ public class LongestPathUnweightedGraph {
 		return choice;
 	}
 
-	private String[] choosePeople() {
+	private int[] choosePeople() {
 		if (graph == null || graph.isEmpty()) {
 			System.out.println("No people loaded. Use option 1 first.");
 			return null;
 		}
 
-		boolean anyFriends = graph.values().stream().anyMatch(p -> p != null && !p.isEmpty());
-		if (!anyFriends) {
+		if (!graph.hasEdges()) {
 			System.out.println("No friendships loaded. Use option 2 first.");
 			return null;
 		}
@@ -168,264 +402,148 @@ public class LongestPathUnweightedGraph {
 		System.out.print("Enter target person's ID: ");
 		String targetId = scanner.nextLine().trim();
 
-		if (!graph.containsKey(sourceId)) {
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
+		if (source < 0) {
 			System.out.println("Person with ID '" + sourceId + "' does not exist.");
 			return null;
 		}
-		if (!graph.containsKey(targetId)) {
+		if (target < 0) {
 			System.out.println("Person with ID '" + targetId + "' does not exist.");
 			return null;
 		}
 
-		if (sourceId.equals(targetId)) {
+		if (source == target) {
 			System.out.println("Source and target are the same person");
 			return null;
 		}
-		String[] a = { sourceId, targetId };
+		int[] a = { source, target };
 		return a;
 	}
 
-	private void reconstructPathWithMap(Map<String, String> dfsParents, String target) {
-		List<String> path = new ArrayList<>();
-		String node = target;
-		while (node != null) {
-			path.add(node);
-			node = dfsParents.get(node);
-		}
-		Collections.reverse(path);
-		printPath(path);
-	}
-
-	private void runInParallel(int threads, Runnable task) throws InterruptedException {
-		CountDownLatch latch = new CountDownLatch(threads);
-		ExecutorService pool = Executors.newFixedThreadPool(threads);
-
-		for (int i = 0; i < threads; i++) {
-			pool.execute(() -> {
-				try {
-					task.run();
-				} catch (Throwable t) {
-					t.printStackTrace();
-				} finally {
-					latch.countDown();
-				}
-			});
-		}
-
-		latch.await();
-		pool.shutdownNow();
-	}
-
-	private boolean dfs(String current, String target, Set<String> visited, Map<String, String> parent)
-			throws Exception {
-		if (visited == null)
-			visited = new HashSet<>();
-		if (parent.isEmpty())
-			parent.put(current, null);
-
-		visited.add(current);
-
-		if (current.equals(target))
-			return true;
-
-		for (String id : graph.getOrDefault(current, Collections.emptySet())) {
-			if (!visited.contains(id)) {
-				parent.put(id, current);
-				if (dfs(id, target, visited, parent))
-					return true;
-			}
-		}
-		return false;
-	}
-
-	private void dfsBacktracking(String current, String target, Set<String> onPath, List<String> currentPath,
-			long deadline) {
-		if (System.nanoTime() > deadline)
+	private void reconstructPathWithParents(int[] dfsParents, int target, LongestPathResult best) {
+		if (dfsParents[target] == -1)
 			return;
-
-		try {
-			currentPath.add(current);
-			onPath.add(current);
-
-			if (current.equals(target)) {
-				if (currentPath.size() > bestPath.size())
-					updateBestPath(currentPath);
-				return;
-			}
-			for (String id : graph.getOrDefault(current, Collections.emptySet())) {
-				if (!onPath.contains(id)) {
-					dfsBacktracking(id, target, onPath, currentPath, deadline);
-				}
-			}
-		} finally {
-			currentPath.remove(currentPath.size() - 1);
-			onPath.remove(current);
+		int length = 0;
+		for (int node = target; node != -2; node = dfsParents[node])
+			length++;
+		int[] path = new int[length];
+		int node = target;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = node;
+			node = dfsParents[node];
 		}
-
+		best.offer(path, length);
 	}
 
-	private void dfsPruning(String current, String target, Set<String> onPath, List<String> currentPath,
-			long deadline) {
-		if (System.nanoTime() > deadline)
-			return;
-
+	/*
+	 * Branch and bound on a ForkJoinPool: the search tree is cut into
+	 * independent subtrees at shallow depths and the workers steal them from
+	 * each other, all pruning against the same incumbent. Tasks only stop
+	 * early once the deadline has passed, so finishing before it means the
+	 * whole tree was covered.
+	 */
+	private boolean searchInParallel(SearchStrategy strategy, int source, int target, long deadline,
+			LongestPathResult best) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
 		try {
-			currentPath.add(current);
-			onPath.add(current);
-
-			if (current.equals(target)) {
-				if (currentPath.size() > bestPath.size())
-					updateBestPath(currentPath);
-				return;
-			}
-			for (String id : graph.getOrDefault(current, Collections.emptySet())) {
-				if (onPath.contains(id))
-					continue;
-				// PATH EXISTS
-				if (!pathExists(id, target, new HashSet<>(onPath)))
-					continue;
-				// POTENTIAL PATH SIZE
-				int upperBound = currentPath.size() + connectedComponets(id, new HashSet<>(onPath));
-				if (upperBound <= bestPath.size())
-					continue;
-				dfsPruning(id, target, onPath, currentPath, deadline);
-			}
+			pool.invoke(new SubtreeTask(strategy, new int[] { source }, target, deadline, best));
+			return System.nanoTime() <= deadline;
 		} finally {
-			currentPath.remove(currentPath.size() - 1);
-			onPath.remove(current);
-		}
-	}
-
-	/* BFS */
-	private int connectedComponets(String current, Set<String> visited) {
-		Queue<String> remaining = new ArrayDeque<>();
-		Set<String> seen = new HashSet<>();
-
-		seen.add(current);
-		remaining.add(current);
-
-		while (!remaining.isEmpty()) {
-			current = remaining.remove();
-			for (String id : graph.getOrDefault(current, Collections.emptySet())) {
-				if (visited.contains(id) || seen.contains(id))
-					continue;
-				seen.add(id);
-				remaining.add(id);
-			}
+			pool.shutdownNow();
 		}
-		return seen.size();
 	}
 
-	private boolean pathExists(String current, String target, Set<String> visited) {
-		if (current.equals(target))
-			return true;
-		visited.add(current);
-
-		for (String id : graph.getOrDefault(current, Collections.emptySet())) {
-			if (!visited.contains(id)) {
-				if (pathExists(id, target, visited))
-					return true;
-			}
+	/* Explores every path that starts with the given prefix */
+	private class SubtreeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final SearchStrategy strategy;
+		private final int[] prefix;
+		private final int target;
+		private final long deadline;
+		private final LongestPathResult best;
+
+		SubtreeTask(SearchStrategy strategy, int[] prefix, int target, long deadline, LongestPathResult best) {
+			this.strategy = strategy;
+			this.prefix = prefix;
+			this.target = target;
+			this.deadline = deadline;
+			this.best = best;
 		}
-		return false;
-	}
 
-	private void dfsHeuristics(String current, String target, Set<String> onPath, List<String> currentPath,
-			long deadline) {
-		if (System.nanoTime() > deadline)
-			return;
+		@Override
+		protected void compute() {
+			if (System.nanoTime() > deadline)
+				return;
 
-		try {
-			currentPath.add(current);
-			onPath.add(current);
+			PathSearchEngine engine = engines.get();
+			int depth = prefix.length - 1;
+			int current = prefix[depth];
 
-			if (current.equals(target)) {
-				if (currentPath.size() > bestPath.size())
-					updateBestPath(currentPath);
+			boolean split = current != target && depth < splitDepth && getSurplusQueuedTaskCount() < surplusTasks;
+			if (!split) {
+				engine.explore(prefix, prefix.length, target, strategy, deadline, best, null);
 				return;
 			}
-			for (String id : orderByDegree(graph.getOrDefault(current, Collections.emptySet()), onPath, null)) {
-				// PATH EXISTS
-				if (!pathExists(id, target, new HashSet<>(onPath)))
-					continue;
-				// POTENTIAL PATH SIZE
-				Set<String> blocked = new HashSet<>(onPath);
-				blocked.remove(id);
-				int upperBound = currentPath.size() + connectedComponets(id, blocked);
-				if (upperBound <= bestPath.size())
-					continue;
-				dfsHeuristics(id, target, onPath, currentPath, deadline);
+
+			int[] candidates = new int[graph.degree(current)];
+			int count = engine.children(prefix, prefix.length, target, strategy, best, null, candidates);
+			List<SubtreeTask> children = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int[] childPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+				childPrefix[prefix.length] = candidates[i];
+				children.add(new SubtreeTask(strategy, childPrefix, target, deadline, best));
 			}
-		} finally {
-			currentPath.remove(currentPath.size() - 1);
-			onPath.remove(current);
+			invokeAll(children);
 		}
 	}
 
-	private Iterable<String> orderByDegree(Set<String> nodes, Set<String> onPath, Random rnd) {
-		List<String> nodeList = new ArrayList<>();
-		for (String node : nodes) {
-			if (!onPath.contains(node))
-				nodeList.add(node);
-		}
-		Integer[] degreeArray = new Integer[nodeList.size()];
-		for (int i = 0; i < nodeList.size(); i++) {
-			String node = nodeList.get(i);
-			int count = 0;
-			for (String n : graph.getOrDefault(node, Collections.emptySet())) {
-				if (!onPath.contains(n))
-					count++;
-			}
-			degreeArray[i] = count;
-		}
+	private void runInParallel(int threads, Runnable task) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
 
-		if (rnd != null)
-			Collections.shuffle(nodeList, rnd);
-
-		for (int i = 0; i < degreeArray.length; i++) {
-			for (int j = i + 1; j < degreeArray.length; j++) {
-				if (degreeArray[i] < degreeArray[j]) {
-					int aux = degreeArray[i];
-					String auxN = nodeList.get(i);
-					degreeArray[i] = degreeArray[j];
-					nodeList.set(i, nodeList.get(j));
-					degreeArray[j] = aux;
-					nodeList.set(j, auxN);
+		for (int i = 0; i < threads; i++) {
+			pool.execute(() -> {
+				try {
+					task.run();
+				} catch (Throwable t) {
+					t.printStackTrace();
+				} finally {
+					latch.countDown();
 				}
-			}
+			});
 		}
-		return nodeList;
-	}
 
-	private void dfsRandomWithRestarts(String current, String target, Set<String> onPath, List<String> currentPath,
-			long deadline, long sliceDeadline, Random rnd) {
-		long time = System.nanoTime();
-		if (time > deadline || time > sliceDeadline)
-			return;
-		try {
-			currentPath.add(current);
-			onPath.add(current);
+		latch.await();
+		pool.shutdownNow();
+	}
 
-			if (current.equals(target)) {
-				if (currentPath.size() > bestPath.size())
-					updateBestPath(currentPath);
-				return;
+	/* Iterative DFS; parent[v] == -1 marks v as unreached, the source is marked with -2 */
+	private boolean dfs(int source, int target, int[] parent) {
+		int[] stack = new int[graph.size()];
+		int[] cursor = new int[graph.size()];
+		int top = 0;
+
+		stack[0] = source;
+		cursor[0] = graph.start(source);
+		parent[source] = -2;
+
+		while (top >= 0) {
+			int current = stack[top];
+			if (current == target)
+				return true;
+			if (cursor[top] == graph.end(current)) {
+				top--;
+				continue;
 			}
-			for (String id : orderByDegree(graph.getOrDefault(current, Collections.emptySet()), onPath, rnd)) {
-				// PATH EXISTS
-				if (!pathExists(id, target, new HashSet<>(onPath)))
-					continue;
-				// POTENTIAL PATH SIZE
-				Set<String> blocked = new HashSet<>(onPath);
-				blocked.remove(id);
-				int upperBound = currentPath.size() + connectedComponets(id, blocked);
-				if (upperBound <= bestPath.size())
-					continue;
-				dfsRandomWithRestarts(id, target, onPath, currentPath, deadline, sliceDeadline, rnd);
+			int id = graph.target(cursor[top]++);
+			if (parent[id] == -1) {
+				parent[id] = current;
+				stack[++top] = id;
+				cursor[top] = graph.start(id);
 			}
-		} finally {
-			currentPath.remove(currentPath.size() - 1);
-			onPath.remove(current);
 		}
+		return false;
 	}
-}
\ No newline at end of file
+}
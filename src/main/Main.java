@@ -3,9 +3,12 @@ package main;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -13,26 +16,25 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 public class Main {
 
-	private static Map<String, Person> people;
+	private static PeopleStore people;
+	private static BidirectionalBfs shortestChains;
+	private static final String defaultSnapshot = "network.snap";
 
 	public static void main(String[] args) {
 
 		Scanner consoleInput = new Scanner(System.in);
-		people = new HashMap<String, Person>();
+		people = new PeopleStore();
 
 		int userChoice = -1;
 
 		try {
-			while (userChoice != 14) {
+			while (userChoice != 17) {
 				System.out.println("1.  Load 'people' into the network \n" + "2.  Load 'relationships' \n"
 						+ "3.  Print out people \n" + "4.  Print out friendships \n"
 						+ "5.  Print friends of a certain person \n"
@@ -42,9 +44,12 @@ public class Main {
 						+ "9.  Create groups with the same favorite movies' \n"
 						+ "10. Find shortest chain between two people (BFS) \n"
 						+ "11. Find a DFS chain between two people \n"
-						+ "12. Find friend cliques (crews) with 5 or more people \n"
+						+ "12. Find friend cliques (crews) of a minimum size \n"
 						+ "13. Find longest chain between two people \n"
-						+ "14. Log out");
+						+ "14. Save the network to a snapshot \n"
+						+ "15. Open a network snapshot (reads and checks the whole file) \n"
+						+ "16. Query people by attributes \n"
+						+ "17. Log out");
 
 				userChoice = consoleInput.nextInt();
 				switch (userChoice) {
@@ -85,9 +90,18 @@ public class Main {
 						findFriendCliques();
 						break;
 					case 13:
-						new LongestPathUnweightedGraph(createFriendshipGraph()).findLongestPath();
+						new LongestPathUnweightedGraph(GraphStore.current()).findLongestPath();
 						break;
 					case 14:
+						new FileHandler().saveSnapshot(people, chooseSnapshotFile());
+						break;
+					case 15:
+						new FileHandler().openSnapshot(people, chooseSnapshotFile());
+						break;
+					case 16:
+						queryPeople();
+						break;
+					case 17:
 						break;
 					default:
 						userChoice = -1;
@@ -105,14 +119,11 @@ public class Main {
 
 	}
 
-	private static Map<String, Set<String>> createFriendshipGraph() {
-		Map<String, Set<String>> g = new HashMap<>();
-		for (Entry<String, Person> entry : people.entrySet()) {
-			String id = entry.getKey();
-			Set<String> friends = entry.getValue().getFriends();
-			g.put(id, (friends == null) ? new HashSet<>() : new HashSet<>(friends));
-		}
-		return g;
+	private static Path chooseSnapshotFile() {
+		Scanner scanner = new Scanner(System.in);
+		System.out.print("Snapshot file (press enter for " + defaultSnapshot + "): ");
+		String name = scanner.nextLine().trim();
+		return Paths.get(name.isEmpty() ? defaultSnapshot : name);
 	}
 
 	private static void findDFSChainBetweenTwoPeople() {
@@ -121,9 +132,8 @@ public class Main {
 			return;
 		}
 
-		boolean anyFriends = people.values().stream()
-				.anyMatch(p -> p.getFriends() != null && !p.getFriends().isEmpty());
-		if (!anyFriends) {
+		FriendshipGraph graph = GraphStore.current();
+		if (!graph.hasEdges()) {
 			System.out.println("No friendships loaded. Use option 2 first.");
 			return;
 		}
@@ -150,66 +160,82 @@ public class Main {
 			System.out.println("Source and target are the same person: " + p.getName() + " (" + p.getIdperson() + ")");
 			return;
 		}
-		Map<String, Set<String>> graph = createFriendshipGraph();
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
 
 		// --- DFS setup ---
-		Set<String> visited = new HashSet<>();
-		Map<String, String> prev = new HashMap<>();
+		int[] parent = new int[graph.size()];
+		Arrays.fill(parent, -1);
 
-		boolean found = dfsPath(sourceId, targetId, visited, prev, graph);
+		boolean found = dfsPath(source, target, parent, graph);
 
 		if (!found) {
 			System.out.println("No DFS chain found between " + sourceId + " and " + targetId + ".");
 			return;
 		}
 
-		// --- Reconstruct path from target back to source using prev ---
-		List<String> path = new ArrayList<>();
-		String current = targetId;
-		while (current != null) {
-			path.add(current);
-			if (current.equals(sourceId)) {
-				break;
-			}
-			current = prev.get(current);
-		}
+		int[] path = chainFromParents(parent, source, target);
 
-		if (!path.get(path.size() - 1).equals(sourceId)) {
-			System.out.println("No DFS chain found between " + sourceId + " and " + targetId + ".");
-			return;
+		System.out.println("\nDFS chain from " + sourceId + " to " + targetId + ":");
+		System.out.println("(Length: " + (path.length - 1) + " edges)\n");
+
+		printChain(graph, path);
+	}
+
+	/* Iterative DFS; parent[v] == -1 marks v as not visited yet */
+	private static boolean dfsPath(int source, int target, int[] parent, FriendshipGraph graph) {
+		int[] stack = new int[graph.size()];
+		int[] cursor = new int[graph.size()];
+		int top = 0;
+
+		stack[0] = source;
+		cursor[0] = graph.start(source);
+		parent[source] = source;
+
+		while (top >= 0) {
+			int current = stack[top];
+			if (current == target)
+				return true;
+			if (cursor[top] == graph.end(current)) {
+				top--;
+				continue;
+			}
+			int node = graph.target(cursor[top]++);
+			if (parent[node] == -1) {
+				parent[node] = current;
+				stack[++top] = node;
+				cursor[top] = graph.start(node);
+			}
 		}
+		return false;
+	}
 
-		Collections.reverse(path);
+	private static int[] chainFromParents(int[] parent, int source, int target) {
+		int length = 1;
+		for (int node = target; node != source; node = parent[node])
+			length++;
 
-		System.out.println("\nDFS chain from " + sourceId + " to " + targetId + ":");
-		System.out.println("(Length: " + (path.size() - 1) + " edges)\n");
+		int[] path = new int[length];
+		int node = target;
+		for (int i = length - 1; i >= 0; i--) {
+			path[i] = node;
+			node = parent[node];
+		}
+		return path;
+	}
 
-		for (int i = 0; i < path.size(); i++) {
-			String id = path.get(i);
+	private static void printChain(FriendshipGraph graph, int[] path) {
+		for (int i = 0; i < path.length; i++) {
+			String id = graph.idOf(path[i]);
 			Person p = people.get(id);
 			System.out.print(p.getName() + " " + p.getLastname() + " (" + id + ")");
-			if (i < path.size() - 1) {
+			if (i < path.length - 1) {
 				System.out.print("  ->  ");
 			}
 		}
 		System.out.println("\n");
 	}
 
-	private static boolean dfsPath(String current, String target, Set<String> visited, Map<String, String> parent,
-			Map<String, Set<String>> graph) {
-		visited.add(current);
-		if (current.equals(target))
-			return true;
-		for (String node : graph.get(current)) {
-			if (!visited.contains(node)) {
-				parent.put(node, current);
-				if (dfsPath(node, target, visited, parent, graph))
-					return true;
-			}
-		}
-		return false;
-	}
-
 	private static void findShortestChainBetweenTwoPeople() {
 		// Basic sanity checks
 		if (people == null || people.isEmpty()) {
@@ -217,9 +243,8 @@ public class Main {
 			return;
 		}
 
-		boolean anyFriends = people.values().stream()
-				.anyMatch(p -> p.getFriends() != null && !p.getFriends().isEmpty());
-		if (!anyFriends) {
+		FriendshipGraph graph = GraphStore.current();
+		if (!graph.hasEdges()) {
 			System.out.println("No friendships loaded. Use option 2 first.");
 			return;
 		}
@@ -246,50 +271,29 @@ public class Main {
 			System.out.println("Source and target are the same person: " + p.getName() + " (" + p.getIdperson() + ")");
 			return;
 		}
-		Map<String, Set<String>> graph = createFriendshipGraph();
-
-		Set<String> visited = new HashSet<>();
-		Queue<String> remaining = new ArrayDeque<>();
-		Map<String, String> parent = new HashMap<>();
-		boolean found = false;
-
-		visited.add(sourceId);
-		remaining.add(sourceId);
-		parent.put(sourceId, null); // to stop iterating while reconstructing the path
-
-		while (!remaining.isEmpty() && !found) {
-			String node = remaining.remove();
-			if (node.equals(targetId))
-				found = true;
-			for (String friendId : graph.get(node)) {
-				if (!visited.contains(friendId)) {
-					visited.add(friendId);
-					remaining.add(friendId);
-					parent.put(friendId, node);
-				}
-			}
-		}
+		int source = graph.indexOf(sourceId);
+		int target = graph.indexOf(targetId);
 
-		List<String> path = new ArrayList<>();
-		String node = targetId;
-		while (node != null) {
-			path.add(node);
-			node = parent.get(node);
+		int[] path = shortestChains(graph).shortestChain(source, target);
+
+		if (path == null) {
+			System.out.println("No chain found between " + sourceId + " and " + targetId + ".");
+			return;
 		}
-		Collections.reverse(path);
+
 		// --- Print result ---
 		System.out.println("\nShortest chain from " + sourceId + " to " + targetId + ":");
-		System.out.println("(Degrees of separation: " + (path.size() - 1) + ")\n");
+		System.out.println("(Degrees of separation: " + (path.length - 1) + ")\n");
 
-		for (int i = 0; i < path.size(); i++) {
-			String id = path.get(i);
-			Person p = people.get(id);
-			System.out.print(p.getName() + " " + p.getLastname() + " (" + id + ")");
-			if (i < path.size() - 1) {
-				System.out.print("  ->  ");
-			}
+		printChain(graph, path);
+	}
+
+	/* The search keeps its arrays between queries, so it is rebuilt only when the graph snapshot changes */
+	private static BidirectionalBfs shortestChains(FriendshipGraph graph) {
+		if (shortestChains == null || shortestChains.getGraph() != graph) {
+			shortestChains = new BidirectionalBfs(graph);
 		}
-		System.out.println("\n");
+		return shortestChains;
 	}
 
 	private static void printPeopleMatchingResidentialHometowns() {
@@ -326,18 +330,9 @@ public class Main {
 			return;
 		}
 
-		List<Person> result = new ArrayList<>();
-
-		for (Person p : people.values()) {
-			String birthplace = p.getBirthplace();
-			if (birthplace != null) {
-				birthplace = birthplace.trim();
-			}
-
-			if (birthplace != null && !birthplace.isEmpty() && hometowns.contains(birthplace)) {
-				result.add(p);
-			}
-		}
+		// one birthplace index lookup per hometown instead of a pass over everyone; the spelling must match exactly
+		PostingList result = new PersonQuery().where(QueryFilter.attributeEquals(PeopleStore.Column.BIRTHPLACE, hometowns))
+				.run(people, GraphStore.current());
 
 		if (result.isEmpty()) {
 			System.out.println("No people found whose birthplace matches the hometown(s) from 'residential.txt'.");
@@ -349,7 +344,8 @@ public class Main {
 		System.out.printf("%-20s %-20s %-15s %-30s\n", "Name", "Surname", "Birthplace", "Studied at");
 		System.out.println("-------------------------------------------------------------------------------");
 
-		for (Person p : result) {
+		for (int i = 0; i < result.size(); i++) {
+			Person p = people.person(result.get(i));
 			String studiedAtText = "";
 			if (p.getStudiedAt() != null && !p.getStudiedAt().isEmpty()) {
 				studiedAtText = String.join(", ", p.getStudiedAt());
@@ -390,43 +386,20 @@ public class Main {
 			}
 		}
 
-		Calendar cal = Calendar.getInstance();
-		cal.setTime(d1);
-		int year1 = cal.get(Calendar.YEAR);
-
-		cal.setTime(d2);
-		int year2 = cal.get(Calendar.YEAR);
-
-		int start = Math.min(year1, year2);
-		int end = Math.max(year1, year2);
-
-		List<Person> result = new ArrayList<>();
-
-		for (Person p : people.values()) {
-
-			String bd = p.getBirthdate();
-
-			if (bd == null || bd.length() < 5)
-				continue;
-
-			int birthYear;
-			try {
-				int lastDash = bd.lastIndexOf('-');
-				birthYear = Integer.parseInt(bd.substring(lastDash + 1));
-			} catch (Exception e) {
-				continue;
-			}
-
-			if (birthYear >= start && birthYear <= end) {
-				result.add(p);
-			}
+		if (d1.after(d2)) {
+			Date swap = d1;
+			d1 = d2;
+			d2 = swap;
 		}
 
-		Collections.sort(result);
+		// answered from the birthdate index, then put in the order of Person.compareTo
+		PostingList born = new PersonQuery().bornBetween(localDate(d1), localDate(d2)).run(people,
+				GraphStore.current());
+		int[] result = people.inCollationOrder(born);
 
-		System.out.println("\nPeople born between years " + start + " and " + end + ":\n");
+		System.out.println("\nPeople born between " + sdf.format(d1) + " and " + sdf.format(d2) + ":\n");
 
-		if (result.isEmpty()) {
+		if (result.length == 0) {
 			System.out.println("No people found.");
 			return;
 		}
@@ -434,12 +407,19 @@ public class Main {
 		System.out.printf("%-30s %-15s %-15s\n", "Full Name", "Birthdate", "Birthplace");
 		System.out.println("---------------------------------------------------------------------");
 
-		for (Person p : result) {
+		for (int row : result) {
+			Person p = people.person(row);
 			System.out.printf("%-30s %-15s %-15s\n", p.getName() + " " + p.getLastname(), p.getBirthdate(),
 					p.getBirthplace());
 		}
 	}
 
+	private static LocalDate localDate(Date date) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(date);
+		return LocalDate.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+	}
+
 	// private static void loadFriendsForEachPerson(List<Friend> friends) {
 	// for (Friend friend : friends) {
 	// Set<String> friendsOfPerson = new
@@ -457,18 +437,13 @@ public class Main {
 			System.out.println("Introduce the surname of the person to find: ");
 			String surname = scanner.nextLine();
 
-			List<Person> matches = new ArrayList<>();
-
-			for (Person p : people.values()) {
-				if (p.getLastname().equalsIgnoreCase(surname)) {
-					matches.add(p);
-				}
-			}
+			PostingList matches = people.lookup(PeopleStore.Column.LASTNAME, surname);
 			if (matches.isEmpty()) {
 				System.out.println("No people found with lastname: " + surname);
 				return;
 			}
-			for (Person person : matches) {
+			for (int i = 0; i < matches.size(); i++) {
+				Person person = people.person(matches.get(i));
 				System.out.println("Person: ID = " + person.getIdperson() + ", Lastname = " + person.getLastname());
 				Set<String> friends = person.getFriends();
 
@@ -525,16 +500,14 @@ public class Main {
 		}
 
 		try {
-			boolean found = false;
+			PostingList found = new PersonQuery().bornIn(List.of(answer)).run(people, GraphStore.current());
 
-			for (Person p : people.values()) {
-				if (answer.equalsIgnoreCase(p.getBirthplace())) {
-					System.out.println(p.getIdperson() + " " + p.getLastname());
-					found = true;
-				}
+			for (int i = 0; i < found.size(); i++) {
+				Person p = people.person(found.get(i));
+				System.out.println(p.getIdperson() + " " + p.getLastname());
 			}
 
-			if (!found) {
+			if (found.isEmpty()) {
 				System.out.println("No people found from " + answer);
 			}
 
@@ -543,6 +516,98 @@ public class Main {
 		}
 	}
 
+	private static void queryPeople() {
+		if (people == null || people.isEmpty()) {
+			System.out.println("No people loaded. Use option 1 first.");
+			return;
+		}
+
+		Scanner scanner = new Scanner(System.in);
+		SimpleDateFormat sdf = new SimpleDateFormat("dd-M-yyyy");
+		sdf.setLenient(false);
+
+		System.out.println("Leave a field empty to skip it. Separate several values with ';' to accept any of them.");
+		PersonQuery query = new PersonQuery();
+
+		List<String> values = askValues(scanner, "Birthplace: ");
+		if (!values.isEmpty())
+			query.bornIn(values);
+		values = askValues(scanner, "Home: ");
+		if (!values.isEmpty())
+			query.livingIn(values);
+
+		LocalDate from = askDate(scanner, sdf, "Born from (dd-M-yyyy): ");
+		LocalDate to = askDate(scanner, sdf, "Born until (dd-M-yyyy): ");
+		if (from != null || to != null)
+			query.bornBetween((from == null) ? LocalDate.MIN : from, (to == null) ? LocalDate.MAX : to);
+
+		values = askValues(scanner, "Studied at: ");
+		if (!values.isEmpty())
+			query.studiedAt(values);
+		values = askValues(scanner, "Worked at: ");
+		if (!values.isEmpty())
+			query.workedAt(values);
+		values = askValues(scanner, "Films seen: ");
+		if (!values.isEmpty())
+			query.saw(values);
+		values = askValues(scanner, "Films not seen: ");
+		if (!values.isEmpty())
+			query.where(QueryFilter.not(QueryFilter.listContains(PeopleStore.ListColumn.FILMS, values)));
+
+		System.out.print("Friend of (ID): ");
+		String friendOf = scanner.nextLine().trim();
+		if (!friendOf.isEmpty())
+			query.friendOf(friendOf);
+
+		QueryPlan plan = query.plan(people, GraphStore.current());
+		int[] result = people.inCollationOrder(plan.execute());
+
+		System.out.println("\nPlan:");
+		System.out.print(plan.explain());
+
+		if (result.length == 0) {
+			System.out.println("\nNo people found.");
+			return;
+		}
+
+		System.out.println("\n" + result.length + " people found:\n");
+		System.out.printf("%-15s %-30s %-15s %-15s\n", "ID", "Full Name", "Birthdate", "Birthplace");
+		System.out.println("-----------------------------------------------------------------------------");
+
+		int shown = Math.min(result.length, 100);
+		for (int i = 0; i < shown; i++) {
+			Person p = people.person(result[i]);
+			System.out.printf("%-15s %-30s %-15s %-15s\n", p.getIdperson(), p.getName() + " " + p.getLastname(),
+					p.getBirthdate(), p.getBirthplace());
+		}
+		if (shown < result.length)
+			System.out.println("... and " + (result.length - shown) + " more");
+	}
+
+	private static List<String> askValues(Scanner scanner, String prompt) {
+		System.out.print(prompt);
+		List<String> values = new ArrayList<>();
+		for (String value : scanner.nextLine().split(";")) {
+			if (!value.trim().isEmpty())
+				values.add(value.trim());
+		}
+		return values;
+	}
+
+	private static LocalDate askDate(Scanner scanner, SimpleDateFormat sdf, String prompt) {
+		while (true) {
+			System.out.print(prompt);
+			String input = scanner.nextLine().trim();
+			if (input.isEmpty())
+				return null;
+			try {
+				return localDate(sdf.parse(input));
+			} catch (Exception e) {
+				System.out.println("Invalid format. Try again.");
+			}
+		}
+	}
+
 	public static List<List<Person>> groupByProfile() {
 
 		Map<String, List<Person>> groups = new HashMap<>();
@@ -580,46 +645,40 @@ public class Main {
 			return;
 		}
 
-		boolean anyFriends = people.values().stream()
-				.anyMatch(p -> p.getFriends() != null && !p.getFriends().isEmpty());
-		if (!anyFriends) {
+		FriendshipGraph graph = GraphStore.current();
+		if (!graph.hasEdges()) {
 			System.out.println("No friendships loaded. Use option 2 first.");
 			return;
 		}
 
-		// Build an adjacency map: id -> set of friend ids
-		Map<String, Set<String>> adjacency = new HashMap<>();
-		for (Map.Entry<String, Person> entry : people.entrySet()) {
-			String id = entry.getKey();
-			Person p = entry.getValue();
-
-			Set<String> neighbours = (p.getFriends() == null) ? Collections.emptySet() : new HashSet<>(p.getFriends());
-			adjacency.put(id, neighbours);
+		Scanner scanner = new Scanner(System.in);
+		System.out.print("Minimum crew size (press enter for 5): ");
+		String answer = scanner.nextLine().trim();
+		int minSize = 5;
+		if (!answer.isEmpty()) {
+			try {
+				minSize = Integer.parseInt(answer);
+			} catch (NumberFormatException e) {
+				System.out.println("Not a number, using 5.");
+			}
 		}
 
-		// Bron–Kerbosch: R = current clique, P = candidates, X = already processed
-		Set<String> R = new HashSet<>();
-		Set<String> P = new HashSet<>(adjacency.keySet()); // all vertices
-		Set<String> X = new HashSet<>();
-
-		List<Set<String>> cliques = new ArrayList<>();
-
-		bronKerbosch(R, P, X, adjacency, cliques);
-
-		// Filter: only cliques with size >= 5
-		List<Set<String>> bigCliques = cliques.stream().filter(c -> c.size() >= 5).collect(Collectors.toList());
+		CliqueFinder finder = new CliqueFinder(graph, minSize);
+		minSize = finder.getMinSize();
+		List<int[]> bigCliques = finder.findCliquesParallel(Runtime.getRuntime().availableProcessors());
 
 		if (bigCliques.isEmpty()) {
-			System.out.println("No friend cliques (crews) with 5 or more people found.");
+			System.out.println("No friend cliques (crews) with " + minSize + " or more people found.");
 			return;
 		}
 
-		System.out.println("\nFriend cliques (crews) with 5 or more people:");
+		System.out.println("\nFriend cliques (crews) with " + minSize + " or more people:");
 
 		int index = 1;
-		for (Set<String> clique : bigCliques) {
-			System.out.println("\nCrew #" + index + " (size " + clique.size() + "):");
-			for (String id : clique) {
+		for (int[] clique : bigCliques) {
+			System.out.println("\nCrew #" + index + " (size " + clique.length + "):");
+			for (int v : clique) {
+				String id = graph.idOf(v);
 				Person p = people.get(id);
 				if (p != null) {
 					System.out.println(" - " + p.getName() + " " + p.getLastname() + " (" + id + ")");
@@ -633,42 +692,4 @@ public class Main {
 		System.out.println();
 	}
 
-	private static void bronKerbosch(Set<String> R, Set<String> P, Set<String> X, Map<String, Set<String>> adjacency,
-			List<Set<String>> cliques) {
-
-		// If no more candidates and no more excluded, R is a maximal clique
-		if (P.isEmpty() && X.isEmpty()) {
-			if (R.size() >= 2) { // we collect all maximal cliques, size filter later
-				cliques.add(new HashSet<>(R));
-			}
-			return;
-		}
-
-		// Copy because we will modify P while iterating
-		Set<String> Pcopy = new HashSet<>(P);
-
-		for (String v : Pcopy) {
-			Set<String> newR = new HashSet<>(R);
-			newR.add(v);
-
-			Set<String> neighbors = adjacency.getOrDefault(v, Collections.emptySet());
-
-			Set<String> newP = new HashSet<>();
-			for (String w : P) {
-				if (neighbors.contains(w)) {
-					newP.add(w);
-				}
-			}
-			Set<String> newX = new HashSet<>();
-			for (String w : X) {
-				if (neighbors.contains(w)) {
-					newX.add(w);
-				}
-			}
-			bronKerbosch(newR, newP, newX, adjacency, cliques);
-			P.remove(v);
-			X.add(v);
-		}
-	}
-
 }
@@ -0,0 +1,14 @@
+package main;
+
+/**
+ * Order in which the heuristic DFS strategies visit the children of a node,
+ * by their residual degree (friends not on the current path).
+ */
+public enum NeighbourOrder {
+	/** Most free friends first: stays where the graph is dense. */
+	DEGREE,
+	/** Fewest free friends first (Warnsdorff's rule): uses up the dead ends early. */
+	WARNSDORFF,
+	/** Uniformly random. */
+	RANDOM
+}
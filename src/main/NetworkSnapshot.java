@@ -0,0 +1,353 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a loaded network: the columns of the people store and
+ * the friendship graph in its CSR form, so a later session opens it without
+ * choosing, parsing or indexing any text file.
+ *
+ * Everything is little-endian and every section starts on a 4-byte boundary,
+ * so the arrays are copied out of the mapped file in bulk and become the
+ * store and the graph as they are; even the hash tables of the dictionaries
+ * are saved, so no value is hashed on opening, and the store builds its
+ * lookup indexes later, on first use. The file is only mapped to be copied:
+ * the store and the graph are heap arrays, not views of it. Opening checks
+ * the checksum, copies and range-checks every section, so both its time and
+ * the heap it takes grow with the file, and a snapshot of several GB takes
+ * seconds to open, not a fraction of one:
+ *
+ * <pre>
+ * header  int magic "NETS", int version, long payload bytes, int CRC-32 of
+ *         the payload, 12 bytes reserved
+ * ids     a dictionary of the n ids, in vertex order
+ * columns for name, lastname, birthdate, gender, birthplace, home,
+ *         groupcode: a dictionary, then int[n] codes into it (-1 for none)
+ * lists   for studiedAt, workplaces, films: a dictionary, then int[n + 1]
+ *         offsets, then the codes
+ * graph   int[n + 1] CSR offsets, then the targets
+ * </pre>
+ *
+ * A dictionary is the arrays of an {@link IdIndex}: int count,
+ * int[count + 1] byte offsets, the UTF-8 bytes (padded), int slots, then
+ * long[slots] hash table entries.
+ */
+public class NetworkSnapshot {
+
+	private static final int MAGIC = 0x5354454E; // "NETS" little-endian
+	private static final int FORMAT_VERSION = 2;
+	private static final int HEADER_BYTES = 32;
+	/* Largest region mapped or written at a time */
+	private static final int WINDOW = 64 << 20;
+
+	private final PeopleStore people;
+	private final FriendshipGraph graph;
+
+	private NetworkSnapshot(PeopleStore people, FriendshipGraph graph) {
+		this.people = people;
+		this.graph = graph;
+	}
+
+	/** The people, in vertex order. */
+	public PeopleStore getPeople() {
+		return people;
+	}
+
+	/** The friendship graph of {@link #getPeople()}; its version is 0 until published. */
+	public FriendshipGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Saves {@code people} and their friendship graph to {@code file},
+	 * through a temporary file so an interrupted save never replaces a good
+	 * snapshot. {@code graph} must be the graph of {@code people}.
+	 */
+	public static void write(PeopleStore people, FriendshipGraph graph, Path file) throws IOException {
+		if (!graph.isGraphOf(people))
+			throw new IllegalArgumentException("The graph is not the graph of these people");
+		int n = people.size();
+		IdIndex ids = people.ids();
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Writer out = new Writer(channel);
+			out.dictionary(ids);
+			for (PeopleStore.Column column : PeopleStore.Column.values()) {
+				out.dictionary(people.dictionary(column).values());
+				out.ints(people.codes(column), n);
+			}
+			for (PeopleStore.ListColumn list : PeopleStore.ListColumn.values()) {
+				int[] offsets = people.listOffsets(list);
+				out.dictionary(people.dictionary(list).values());
+				out.ints(offsets, n + 1);
+				out.ints(people.listCodes(list), offsets[n]);
+			}
+			int[] offsets = new int[n + 1];
+			for (int v = 0; v < n; v++)
+				offsets[v + 1] = graph.end(v);
+			out.ints(offsets, n + 1);
+			out.targets(graph, offsets[n]);
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(out.written).putInt((int) out.crc.getValue());
+			header.clear();
+			channel.write(header, 0);
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Opens a snapshot written by {@link #write}. The whole file is read
+	 * twice: once through 64 MB mapped windows against its checksum, then
+	 * again to copy the sections into heap arrays, with every code and
+	 * offset range-checked. Fails if it is not a snapshot, is of another
+	 * version, or is damaged.
+	 */
+	public static NetworkSnapshot read(Path file) throws IOException {
+		return read(file, true);
+	}
+
+	/**
+	 * Like {@link #read(Path)}, but skips the checksum pass over the file if
+	 * {@code verify} is false. Codes and offsets are range-checked either
+	 * way, so a damaged file cannot index out of its arrays, but damaged
+	 * text or hash table entries go unnoticed.
+	 */
+	public static NetworkSnapshot read(Path file, boolean verify) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header) > 0)
+				;
+			header.flip();
+			if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+				throw new IOException(file + " is not a network snapshot");
+			int version = header.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported snapshot version " + version);
+			long payload = header.getLong();
+			int checksum = header.getInt();
+			if (payload < 0 || HEADER_BYTES + payload != channel.size())
+				throw new IOException("Snapshot is truncated");
+
+			Reader in = new Reader(channel, payload);
+			if (verify && (int) in.checksum() != checksum)
+				throw new IOException("Snapshot checksum does not match, the file is damaged");
+
+			IdIndex ids = in.dictionary();
+			int n = ids.size();
+
+			PeopleStore.Column[] columns = PeopleStore.Column.values();
+			StringDictionary[] dictionaries = new StringDictionary[columns.length];
+			int[][] codes = new int[columns.length][];
+			for (int c = 0; c < columns.length; c++) {
+				dictionaries[c] = new StringDictionary(in.dictionary());
+				codes[c] = within(in.ints(n), -1, dictionaries[c].size());
+			}
+			PeopleStore.ListColumn[] lists = PeopleStore.ListColumn.values();
+			StringDictionary[] listDictionaries = new StringDictionary[lists.length];
+			int[][] listOffsets = new int[lists.length][];
+			int[][] listCodes = new int[lists.length][];
+			for (int l = 0; l < lists.length; l++) {
+				listDictionaries[l] = new StringDictionary(in.dictionary());
+				listOffsets[l] = ascending(in.ints(n + 1));
+				listCodes[l] = within(in.ints(listOffsets[l][n]), 0, listDictionaries[l].size());
+			}
+			int[] offsets = ascending(in.ints(n + 1));
+			int[] targets = within(in.ints(offsets[n]), 0, n);
+
+			PeopleStore people = new PeopleStore(ids, dictionaries, codes, listDictionaries, listOffsets, listCodes);
+			return new NetworkSnapshot(people, new FriendshipGraph(0, ids, offsets, targets));
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Snapshot is corrupt", e);
+		}
+	}
+
+	/* Offsets must start at 0 and never decrease */
+	private static int[] ascending(int[] offsets) throws IOException {
+		for (int i = 0; i < offsets.length; i++) {
+			if (i == 0 ? offsets[0] != 0 : offsets[i] < offsets[i - 1])
+				throw new IOException("Snapshot is corrupt");
+		}
+		return offsets;
+	}
+
+	/* Every value must be in [low, high) */
+	private static int[] within(int[] values, int low, int high) throws IOException {
+		for (int value : values) {
+			if (value < low || value >= high)
+				throw new IOException("Snapshot is corrupt");
+		}
+		return values;
+	}
+
+	/* ---- Writing and reading the sections ---- */
+
+	private static final class Writer {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+		final CRC32 crc = new CRC32();
+		long written;
+
+		Writer(FileChannel channel) throws IOException {
+			this.channel = channel;
+			channel.position(HEADER_BYTES);
+		}
+
+		/* The arrays of an id dictionary as they are, hash table included */
+		void dictionary(IdIndex dictionary) throws IOException {
+			int size = dictionary.size();
+			int bytes = dictionary.starts()[size];
+			ints(new int[] { size }, 1);
+			ints(dictionary.starts(), size + 1);
+			bytes(dictionary.bytes(), bytes);
+			bytes(new byte[4], (4 - bytes % 4) % 4);
+			ints(new int[] { dictionary.slots().length }, 1);
+			longs(dictionary.slots());
+		}
+
+		void ints(int[] values, int count) throws IOException {
+			for (int i = 0; i < count;) {
+				if (buffer.remaining() < 4)
+					flush();
+				int length = Math.min(buffer.remaining() / 4, count - i);
+				buffer.asIntBuffer().put(values, i, length);
+				buffer.position(buffer.position() + 4 * length);
+				i += length;
+			}
+		}
+
+		void targets(FriendshipGraph graph, int count) throws IOException {
+			for (int e = 0; e < count; e++) {
+				if (buffer.remaining() < 4)
+					flush();
+				buffer.putInt(graph.target(e));
+			}
+		}
+
+		void longs(long[] values) throws IOException {
+			for (int i = 0; i < values.length;) {
+				if (buffer.remaining() < 8)
+					flush();
+				int length = Math.min(buffer.remaining() / 8, values.length - i);
+				buffer.asLongBuffer().put(values, i, length);
+				buffer.position(buffer.position() + 8 * length);
+				i += length;
+			}
+		}
+
+		void bytes(byte[] bytes, int count) throws IOException {
+			for (int i = 0; i < count;) {
+				if (!buffer.hasRemaining())
+					flush();
+				int length = Math.min(buffer.remaining(), count - i);
+				buffer.put(bytes, i, length);
+				i += length;
+			}
+		}
+
+
+		void flush() throws IOException {
+			buffer.flip();
+			written += buffer.remaining();
+			crc.update(buffer.duplicate());
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+	}
+
+	private static final class Reader {
+		private final FileChannel channel;
+		private final long end;
+		private long position = HEADER_BYTES;
+
+		Reader(FileChannel channel, long payload) {
+			this.channel = channel;
+			this.end = HEADER_BYTES + payload;
+		}
+
+		long checksum() throws IOException {
+			CRC32 crc = new CRC32();
+			for (long at = HEADER_BYTES; at < end; at += WINDOW)
+				crc.update(map(at, (int) Math.min(WINDOW, end - at)));
+			return crc.getValue();
+		}
+
+		int[] ints(int count) throws IOException {
+			if (count < 0 || position + 4L * count > end)
+				throw new IOException("Snapshot is corrupt");
+			int[] values = new int[count];
+			for (int done = 0; done < count;) {
+				int length = Math.min(WINDOW / 4, count - done);
+				IntBuffer window = map(position, 4 * length).asIntBuffer();
+				window.get(values, done, length);
+				done += length;
+				position += 4L * length;
+			}
+			return values;
+		}
+
+		long[] longs(int count) throws IOException {
+			if (count < 0 || position + 8L * count > end)
+				throw new IOException("Snapshot is corrupt");
+			long[] values = new long[count];
+			for (int done = 0; done < count;) {
+				int length = Math.min(WINDOW / 8, count - done);
+				LongBuffer window = map(position, 8 * length).asLongBuffer();
+				window.get(values, done, length);
+				done += length;
+				position += 8L * length;
+			}
+			return values;
+		}
+
+		/* size bytes and the padding after them */
+		byte[] bytes(int size) throws IOException {
+			if (size < 0 || position + size > end)
+				throw new IOException("Snapshot is corrupt");
+			byte[] bytes = new byte[size];
+			for (int done = 0; done < size;) {
+				int length = Math.min(WINDOW, size - done);
+				map(position, length).get(bytes, done, length);
+				done += length;
+				position += length;
+			}
+			position += (4 - size % 4) % 4;
+			return bytes;
+		}
+
+		IdIndex dictionary() throws IOException {
+			int size = ints(1)[0];
+			int[] starts = ascending(ints(size + 1));
+			byte[] bytes = bytes(starts[size]);
+			long[] slots = longs(ints(1)[0]);
+			return new IdIndex(bytes, starts, size, slots);
+		}
+
+		private MappedByteBuffer map(long at, int length) throws IOException {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, at, length);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return buffer;
+		}
+	}
+}
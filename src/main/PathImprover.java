@@ -0,0 +1,199 @@
+package main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local search that lengthens the incumbent of a longest-path run while the
+ * DFS workers are still going, so their pruning bound rises sooner.
+ *
+ * It works on its own copy of the best path with three kinds of move:
+ * inserting a free common friend between two neighbours on the path,
+ * replacing the segment between two path vertices with a longer detour
+ * through free vertices (found by self-avoiding random walks), and accepting
+ * some shorter detours too, with the usual simulated annealing probability
+ * e^(Δ/T), to get out of local optima. Whenever its copy beats the incumbent
+ * it is offered back; when the incumbent gets ahead, the copy is reloaded.
+ */
+public class PathImprover {
+
+	/* Longest segment replaced by one move */
+	private static final int MAX_SPAN = 6;
+	/* Inner vertices a detour may add on top of those it replaces */
+	private static final int EXTRA_INNER = 4;
+	/* Random walks tried per detour */
+	private static final int WALKS = 8;
+	/* Moves without an improvement before the path is reloaded and reheated */
+	private static final int PATIENCE = 20_000;
+	private static final double START_TEMPERATURE = 1.5;
+	private static final double COOLING = 0.9995;
+
+	private final FriendshipGraph graph;
+	private final SplittableRandom rnd;
+
+	private final boolean[] onPath;
+	private final int[] path;
+	private int length;
+	/* Incumbent length this improver last loaded or published */
+	private int known;
+
+	private final int[] walk;
+	private final int[] detour;
+	private long moves;
+
+	public PathImprover(FriendshipGraph graph, long seed) {
+		int n = graph.size();
+		this.graph = graph;
+		this.rnd = new SplittableRandom(seed);
+		this.onPath = new boolean[n];
+		this.path = new int[n];
+		this.walk = new int[n];
+		this.detour = new int[n];
+	}
+
+	/** Moves tried since this improver was created. */
+	public long getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Improves the incumbent of {@code best} until the deadline passes or
+	 * {@code done} is set. Does nothing while there is no incumbent.
+	 */
+	public void improve(LongestPathResult best, long deadline, AtomicBoolean done) {
+		double temperature = START_TEMPERATURE;
+		int stale = 0;
+
+		while (!done.get() && System.nanoTime() < deadline) {
+			if (best.bestLength() > known || stale > PATIENCE) {
+				int[] incumbent = best.bestPath();
+				load(incumbent, incumbent.length);
+				insertAll();
+				offer(best);
+				temperature = START_TEMPERATURE;
+				stale = 0;
+			}
+			if (length < 3) {
+				LockSupport.parkNanos(1_000_000);
+				continue;
+			}
+
+			for (int i = 0; i < 256; i++) {
+				if (move(temperature) && offer(best))
+					stale = 0;
+				else
+					stale++;
+				temperature = Math.max(0.05, temperature * COOLING);
+			}
+		}
+	}
+
+	private void load(int[] source, int sourceLength) {
+		for (int i = 0; i < length; i++)
+			onPath[path[i]] = false;
+		System.arraycopy(source, 0, path, 0, sourceLength);
+		length = sourceLength;
+		known = Math.max(known, sourceLength);
+		for (int i = 0; i < length; i++)
+			onPath[path[i]] = true;
+	}
+
+	private boolean offer(LongestPathResult best) {
+		if (length <= best.bestLength() || !best.offer(path, length))
+			return false;
+		known = length;
+		return true;
+	}
+
+	/* Greedy pass: put a free common friend between every pair of neighbours that has one */
+	private void insertAll() {
+		for (int i = 0; i + 1 < length; i++) {
+			int u = path[i];
+			int v = path[i + 1];
+			int small = (graph.degree(u) <= graph.degree(v)) ? u : v;
+			int other = (small == u) ? v : u;
+			for (int e = graph.start(small); e < graph.end(small); e++) {
+				int w = graph.target(e);
+				if (!onPath[w] && graph.areFriends(w, other)) {
+					detour[0] = w;
+					splice(i, i + 1, 1);
+					break;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Replaces the inner vertices between path[i] and path[j] with a detour
+	 * through free vertices, if it is longer or the annealing accepts it.
+	 */
+	private boolean move(double temperature) {
+		moves++;
+		int i = rnd.nextInt(length - 1);
+		int j = i + 1 + rnd.nextInt(Math.min(MAX_SPAN, length - 1 - i));
+		int removed = j - i - 1;
+
+		for (int k = i + 1; k < j; k++)
+			onPath[path[k]] = false;
+		int added = bestDetour(path[i], path[j], removed + EXTRA_INNER);
+		int delta = added - removed;
+
+		if (added < 0 || (delta < 0 && rnd.nextDouble() >= Math.exp(delta / temperature))) {
+			for (int k = i + 1; k < j; k++)
+				onPath[path[k]] = true;
+			return false;
+		}
+		splice(i, j, added);
+		return delta > 0;
+	}
+
+	/* Longest of a few self-avoiding random walks from u that end next to v, into detour[] */
+	private int bestDetour(int u, int v, int maxInner) {
+		int bestInner = -1;
+		for (int attempt = 0; attempt < WALKS; attempt++) {
+			int steps = 0;
+			int current = u;
+			while (true) {
+				if (steps > bestInner && graph.areFriends(current, v)) {
+					bestInner = steps;
+					System.arraycopy(walk, 0, detour, 0, steps);
+				}
+				if (steps == maxInner)
+					break;
+				int next = randomFreeFriend(current, v);
+				if (next < 0)
+					break;
+				onPath[next] = true;
+				walk[steps++] = next;
+				current = next;
+			}
+			for (int k = 0; k < steps; k++)
+				onPath[walk[k]] = false;
+		}
+		return bestInner;
+	}
+
+	/* Reservoir sample over the free friends of v other than the walk's goal */
+	private int randomFreeFriend(int v, int goal) {
+		int chosen = -1;
+		int seen = 0;
+		for (int e = graph.start(v); e < graph.end(v); e++) {
+			int w = graph.target(e);
+			if (!onPath[w] && w != goal && rnd.nextInt(++seen) == 0)
+				chosen = w;
+		}
+		return chosen;
+	}
+
+	/* path[i+1..j) becomes detour[0..added) */
+	private void splice(int i, int j, int added) {
+		int shift = added - (j - i - 1);
+		if (shift != 0)
+			System.arraycopy(path, j, path, j + shift, length - j);
+		System.arraycopy(detour, 0, path, i + 1, added);
+		for (int k = 0; k < added; k++)
+			onPath[detour[k]] = true;
+		length += shift;
+	}
+}
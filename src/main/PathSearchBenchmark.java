@@ -0,0 +1,79 @@
+package main;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many search nodes per second a single {@link PathSearchEngine}
+ * expands with each strategy (and each {@link NeighbourOrder} for the
+ * strategies that order children), on a synthetic small-world graph.
+ *
+ * Runs like a JMH throughput benchmark (warm-up iterations, then measured
+ * iterations of fixed length) so it works without extra dependencies.
+ *
+ * Usage: {@code java main.PathSearchBenchmark [people] [friendsPerPerson] [iterationMillis]}
+ */
+public class PathSearchBenchmark {
+
+	private static final int warmupIterations = 3;
+	private static final int measuredIterations = 5;
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		int k = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+		long iterationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+		FriendshipGraph graph = ShortestChainBenchmark.smallWorld(n, k, 0.1, new Random(42));
+		int source = 0;
+		int target = n / 2;
+		System.out.println("Small-world graph: " + n + " people, " + k + " friends each, path " + source + " -> "
+				+ target);
+
+		System.out.printf("%-26s %16s %16s %12s\n", "Strategy", "nodes/s", "error (+/-)", "best path");
+		for (SearchStrategy strategy : SearchStrategy.values()) {
+			NeighbourOrder[] orders = strategy.ordersChildren() ? NeighbourOrder.values()
+					: new NeighbourOrder[] { NeighbourOrder.DEGREE };
+			for (NeighbourOrder order : orders)
+				measure(graph, strategy, order, source, target, iterationMillis);
+		}
+	}
+
+	private static void measure(FriendshipGraph graph, SearchStrategy strategy, NeighbourOrder order, int source,
+			int target, long iterationMillis) {
+		PathSearchEngine engine = new PathSearchEngine(graph);
+		engine.setOrder(order);
+		LongestPathResult best = new LongestPathResult();
+		Random rnd = new Random(1);
+
+		for (int i = 0; i < warmupIterations; i++)
+			iteration(engine, strategy, source, target, iterationMillis, best, rnd);
+
+		double[] rates = new double[measuredIterations];
+		double sum = 0;
+		for (int i = 0; i < measuredIterations; i++) {
+			rates[i] = iteration(engine, strategy, source, target, iterationMillis, best, rnd);
+			sum += rates[i];
+		}
+		double mean = sum / measuredIterations;
+		double variance = 0;
+		for (double rate : rates)
+			variance += (rate - mean) * (rate - mean);
+		double error = Math.sqrt(variance / (measuredIterations - 1));
+
+		String name = strategy.ordersChildren() ? strategy + "/" + order : strategy.toString();
+		System.out.printf("%-26s %16.0f %16.0f %12d\n", name, mean, error, best.bestLength());
+	}
+
+	/* Restarts the search until the iteration time is used up; returns nodes per second */
+	private static double iteration(PathSearchEngine engine, SearchStrategy strategy, int source, int target,
+			long iterationMillis, LongestPathResult best, Random rnd) {
+		int[] start = { source };
+		long begin = System.nanoTime();
+		long end = begin + TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+		long before = engine.getExpanded();
+		while (System.nanoTime() < end)
+			engine.explore(start, 1, target, strategy, end, best, rnd);
+		long elapsed = System.nanoTime() - begin;
+		return (engine.getExpanded() - before) * 1e9 / elapsed;
+	}
+}
@@ -0,0 +1,356 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Single-threaded DFS for the longest simple path between two people.
+ *
+ * Everything the search touches is allocated up front and reused: the path
+ * is an int stack, the DFS is iterative with one child cursor per depth, the
+ * pruning strategies get reachability and bounds for all children of a node
+ * from one {@link ResidualBound} pass, and the neighbour ordering works in
+ * per-depth scratch buffers, reading residual degrees that are kept up to
+ * date as vertices are pushed and popped. Once the buffers have grown to the
+ * depths and degrees the search reaches, expanding a node allocates nothing.
+ * When the region left around the target gets small, the pruning strategies
+ * hand it to an {@link ExactPathSolver} instead of enumerating it. One engine
+ * per thread.
+ */
+public class PathSearchEngine {
+
+	/* Expansions between two looks at the clock */
+	private static final int CLOCK_MASK = 0x3F;
+	/* Residual regions up to this many people are finished with the subset DP */
+	private static final int EXACT_VERTICES = 16;
+
+	private final FriendshipGraph graph;
+
+	private final boolean[] onPath;
+	private final int[] path;
+	private final int[] cursor;
+	private final int[] childCount;
+	/* Friends of each vertex that are not on the path, kept up to date on every push and pop */
+	private final int[] residualDegree;
+	private NeighbourOrder order = NeighbourOrder.DEGREE;
+	private int[][] children = new int[0][];
+	private int[][] childBounds = new int[0][];
+	private long[][] keys = new long[0][];
+
+	private final ResidualBound bound;
+	private ExactPathSolver exact;
+	private int[] region;
+	private int[] completion;
+
+	private int target;
+	private SearchStrategy strategy;
+	private LongestPathResult best;
+	private long deadline;
+	private Random rnd;
+	private final Random fallbackRandom = new Random();
+	private boolean timedOut;
+	private int stopBase;
+	private int stopDepth;
+
+	private long expanded;
+
+	public PathSearchEngine(FriendshipGraph graph) {
+		int n = graph.size();
+		this.graph = graph;
+		this.onPath = new boolean[n];
+		this.path = new int[n];
+		this.cursor = new int[n];
+		this.childCount = new int[n];
+		this.residualDegree = new int[n];
+		for (int v = 0; v < n; v++)
+			residualDegree[v] = graph.degree(v);
+		this.bound = new ResidualBound(graph);
+	}
+
+	public FriendshipGraph getGraph() {
+		return graph;
+	}
+
+	public NeighbourOrder getOrder() {
+		return order;
+	}
+
+	/** Order of the children for the strategies that order them; {@link NeighbourOrder#DEGREE} by default. */
+	public void setOrder(NeighbourOrder order) {
+		this.order = order;
+	}
+
+	/** Search nodes expanded by this engine since it was created. */
+	public long getExpanded() {
+		return expanded;
+	}
+
+	/** Whether the last call to {@link #explore} stopped at its deadline. */
+	public boolean timedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * Explores every simple path that starts with {@code prefix[0..length)}
+	 * and offers the ones ending at {@code target} to {@code best}. The random
+	 * generator is only used by {@link SearchStrategy#RANDOMIZED} and
+	 * {@link NeighbourOrder#RANDOM}, and may be null.
+	 */
+	public void explore(int[] prefix, int length, int target, SearchStrategy strategy, long deadline,
+			LongestPathResult best, Random rnd) {
+		this.target = target;
+		this.strategy = strategy;
+		this.best = best;
+		this.deadline = deadline;
+		this.rnd = (rnd != null) ? rnd : fallbackRandom;
+		this.timedOut = false;
+
+		int base = length - 1;
+		for (int i = 0; i < base; i++) {
+			path[i] = prefix[i];
+			push(prefix[i]);
+		}
+		try {
+			run(prefix[base], base);
+		} finally {
+			for (int i = 0; i < base; i++)
+				pop(prefix[i]);
+		}
+	}
+
+	/**
+	 * After an {@link #explore} that timed out, pushes the subtrees it had not
+	 * finished onto {@code frontier} and returns how many there were. With a
+	 * pruning strategy, children that cannot beat the incumbent any more are
+	 * dropped.
+	 */
+	public int captureFrontier(SearchFrontier frontier) {
+		if (!timedOut)
+			return 0;
+		int[] trunk = Arrays.copyOf(path, stopDepth + 1);
+		int pushed = 0;
+		for (int d = stopBase; d <= stopDepth; d++) {
+			for (int i = childCount[d] - 1; i >= cursor[d]; i--) {
+				if (strategy.prunes() && !viable(d, i))
+					continue;
+				frontier.push(trunk, d + 1, children[d][i]);
+				pushed++;
+			}
+		}
+		timedOut = false;
+		return pushed;
+	}
+
+	/**
+	 * Writes the children of the last vertex of {@code prefix} that survive the
+	 * strategy's pruning into {@code out}, in the order the DFS would visit
+	 * them, and returns how many there are.
+	 */
+	public int children(int[] prefix, int length, int target, SearchStrategy strategy, LongestPathResult best,
+			Random rnd, int[] out) {
+		this.target = target;
+		this.strategy = strategy;
+		this.best = best;
+		this.rnd = (rnd != null) ? rnd : fallbackRandom;
+
+		int depth = length - 1;
+		for (int i = 0; i <= depth; i++) {
+			path[i] = prefix[i];
+			push(prefix[i]);
+		}
+		try {
+			int count = fillChildren(prefix[depth], depth, -1);
+			int[] buffer = children[depth];
+			int size = 0;
+			for (int i = 0; i < count; i++) {
+				if (!strategy.prunes() || viable(depth, i))
+					out[size++] = buffer[i];
+			}
+			return size;
+		} finally {
+			for (int i = 0; i <= depth; i++)
+				pop(prefix[i]);
+		}
+	}
+
+	/* Iterative DFS below path[0..base), starting at vertex start */
+	private void run(int start, int base) {
+		int depth = base;
+		if (!enter(start, depth, -1))
+			return;
+
+		int ticks = 0;
+		while (depth >= base) {
+			if ((++ticks & CLOCK_MASK) == 0 && System.nanoTime() > deadline) {
+				timedOut = true;
+				stopBase = base;
+				stopDepth = depth;
+				for (int d = depth; d >= base; d--)
+					pop(path[d]);
+				return;
+			}
+
+			if (cursor[depth] < childCount[depth]) {
+				int i = cursor[depth]++;
+				int child = children[depth][i];
+				if (strategy.prunes() && !viable(depth, i))
+					continue;
+				if (enter(child, depth + 1, strategy.prunes() ? childBounds[depth][i] : -1))
+					depth++;
+				continue;
+			}
+
+			pop(path[depth]);
+			depth--;
+		}
+	}
+
+	/* Puts v on the path at the given depth; returns false if there is nothing below it */
+	private boolean enter(int v, int depth, int vBound) {
+		expanded++;
+		path[depth] = v;
+		if (v == target) {
+			best.offer(path, depth + 1);
+			return false;
+		}
+		push(v);
+		childCount[depth] = fillChildren(v, depth, vBound);
+		cursor[depth] = 0;
+		return true;
+	}
+
+	/*
+	 * Puts v on the path; its friends each lose one free friend. Only the
+	 * strategies that order children keep count; since every call starts and
+	 * ends with an empty path, the counts stay right from call to call.
+	 */
+	private void push(int v) {
+		onPath[v] = true;
+		if (strategy.ordersChildren()) {
+			for (int e = graph.start(v); e < graph.end(v); e++)
+				residualDegree[graph.target(e)]--;
+		}
+	}
+
+	private void pop(int v) {
+		onPath[v] = false;
+		if (strategy.ordersChildren()) {
+			for (int e = graph.start(v); e < graph.end(v); e++)
+				residualDegree[graph.target(e)]++;
+		}
+	}
+
+	/*
+	 * Candidate children of v (already on the path) in visiting order, into
+	 * children[depth]. Pruning strategies drop the children that cannot reach
+	 * the target and keep a bound for the others in childBounds[depth].
+	 * vBound is v's own bound from its parent, or -1 if it is not known.
+	 */
+	private int fillChildren(int v, int depth, int vBound) {
+		int degree = graph.degree(v);
+		if (children.length <= depth) {
+			children = Arrays.copyOf(children, Math.max(depth + 1, children.length * 2));
+			childBounds = Arrays.copyOf(childBounds, children.length);
+			keys = Arrays.copyOf(keys, children.length);
+		}
+		int[] buffer = children[depth];
+		if (buffer == null || buffer.length < degree)
+			buffer = children[depth] = new int[Math.max(degree, 4)];
+
+		int count = 0;
+		for (int e = graph.start(v); e < graph.end(v); e++) {
+			int w = graph.target(e);
+			if (!onPath[w])
+				buffer[count++] = w;
+		}
+		if (!strategy.prunes()) {
+			if (strategy.ordersChildren() && count > 1)
+				order(buffer, count, depth);
+			return count;
+		}
+
+		int[] bounds = childBounds[depth];
+		if (bounds == null || bounds.length < degree)
+			bounds = childBounds[depth] = new int[Math.max(degree, 4)];
+
+		// a single way out of a vertex that reaches the target reaches it too, with one vertex less
+		if (count == 1 && vBound > 0) {
+			bounds[0] = vBound - 1;
+			return count;
+		}
+
+		bound.compute(onPath, target);
+		if (bound.componentSize() < EXACT_VERTICES) {
+			finishExactly(v, depth);
+			return 0;
+		}
+		int reachable = 0;
+		for (int i = 0; i < count; i++) {
+			if (bound.reachesTarget(buffer[i]))
+				buffer[reachable++] = buffer[i];
+		}
+		count = reachable;
+		if (strategy.ordersChildren() && count > 1)
+			order(buffer, count, depth);
+		for (int i = 0; i < count; i++)
+			bounds[i] = bound.bound(buffer[i]);
+		return count;
+	}
+
+	/*
+	 * v and what is left around the target are small enough to solve outright:
+	 * offers the best completion of the path and leaves nothing to expand.
+	 */
+	private void finishExactly(int v, int depth) {
+		int size = bound.componentSize();
+		if (depth + 1 + size <= best.bestLength())
+			return;
+		if (exact == null) {
+			exact = new ExactPathSolver(graph, EXACT_VERTICES);
+			region = new int[EXACT_VERTICES];
+			completion = new int[EXACT_VERTICES];
+		}
+		region[0] = v;
+		for (int i = 0; i < size; i++)
+			region[i + 1] = bound.member(i);
+		int length = exact.solve(region, size + 1, v, target, 1, completion);
+		if (length == 0)
+			return;
+		System.arraycopy(completion, 1, path, depth + 1, length - 1);
+		best.offer(path, depth + length);
+	}
+
+	private void order(int[] buffer, int count, int depth) {
+		int degree = graph.degree(path[depth]);
+
+		long[] sortKeys = keys[depth];
+		if (sortKeys == null || sortKeys.length < degree)
+			sortKeys = keys[depth] = new long[Math.max(degree, 4)];
+
+		// high half: rank by residual degree, then a random tie-break if asked for; low half: vertex
+		boolean shuffle = strategy == SearchStrategy.RANDOMIZED || order == NeighbourOrder.RANDOM;
+		for (int i = 0; i < count; i++) {
+			int w = buffer[i];
+			int free = Math.min(residualDegree[w], 0x7FFF);
+			int rank;
+			if (order == NeighbourOrder.DEGREE)
+				rank = (0x7FFF - free) << 16;
+			else if (order == NeighbourOrder.WARNSDORFF)
+				rank = free << 16;
+			else
+				rank = 0;
+			if (shuffle)
+				rank |= rnd.nextInt() & 0xFFFF;
+			sortKeys[i] = ((long) rank << 32) | w;
+		}
+		Arrays.sort(sortKeys, 0, count);
+		for (int i = 0; i < count; i++)
+			buffer[i] = (int) sortKeys[i];
+	}
+
+	/* The i-th child at this depth can still beat the incumbent */
+	private boolean viable(int depth, int i) {
+		int upperBound = depth + 1 + childBounds[depth][i];
+		return upperBound > best.bestLength();
+	}
+}
@@ -0,0 +1,521 @@
+package main;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The loaded people, stored by column instead of one object each.
+ *
+ * Every person is a row. The ids are kept once, as bytes, in an
+ * {@link IdIndex} shared with the friendship graph, so row r is vertex r of
+ * the current graph. The text fields are dictionary-encoded: a column holds
+ * one int code per row and its {@link StringDictionary} every distinct value
+ * once. The list fields hold, per row, a range of codes in one int array.
+ * A {@link Person} read from the store is only a view of a row, and the
+ * friends of a stored person are read from the graph.
+ *
+ * Lastname, birthplace and home are indexed: {@link #lookup} returns the
+ * rows with a value, ignoring case, without scanning. An index is built
+ * from the column on its first lookup and from then on follows every row
+ * added or changed, so loading or opening a network pays only for the
+ * indexes that are used. Birthdates are also kept as epoch days
+ * for range queries ({@link #bornBetween}), and rows can be put in the
+ * order of {@link Person#compareTo} without comparing any String. Every
+ * value of the list fields has a {@link RowBitmap} of the rows that list it,
+ * for set algebra over studies, workplaces and films.
+ *
+ * The store is a map from id to person in row order, so code written for a
+ * {@code Map<String, Person>} keeps working; people cannot be removed.
+ */
+public class PeopleStore extends AbstractMap<String, Person> {
+
+	/** Single-valued text fields. */
+	public enum Column {
+		NAME, LASTNAME, BIRTHDATE, GENDER, BIRTHPLACE, HOME, GROUPCODE
+	}
+
+	/** Multi-valued fields. */
+	public enum ListColumn {
+		STUDIED_AT, WORKPLACES, FILMS
+	}
+
+	private static final Column[] COLUMNS = Column.values();
+	private static final ListColumn[] LISTS = ListColumn.values();
+	private static final Set<Column> INDEXED = EnumSet.of(Column.LASTNAME, Column.BIRTHPLACE, Column.HOME);
+	private static final Set<Column> COLLATED = EnumSet.of(Column.BIRTHPLACE, Column.LASTNAME, Column.NAME);
+
+	/** {@link #birthDay} of a person without a valid birthdate. */
+	public static final int NO_DATE = BirthdateIndex.NO_DATE;
+
+	private IdIndex ids;
+	private int size;
+	private StringDictionary[] dictionaries;
+	private int[][] codes;
+	/* By column; null for the columns that are not indexed, or not yet */
+	private AttributeIndex[] indexes;
+	private BirthdateIndex birthdates;
+	/* Built on first use after the collated columns change */
+	private CollationOrder collation;
+	private StringDictionary[] listDictionaries;
+	/* Row r's values of list l are listCodes[l][listOffsets[l][r] .. listOffsets[l][r + 1]) */
+	private int[][] listOffsets;
+	private int[][] listCodes;
+	/* By list; null until first used */
+	private ListIndex[] listIndexes;
+	private volatile FriendshipGraph graph;
+
+	public PeopleStore() {
+		clear();
+	}
+
+	/** A store over saved columns; see {@link NetworkSnapshot}. */
+	PeopleStore(IdIndex ids, StringDictionary[] dictionaries, int[][] codes, StringDictionary[] listDictionaries,
+			int[][] listOffsets, int[][] listCodes) {
+		this.ids = ids;
+		this.size = ids.size();
+		this.dictionaries = dictionaries;
+		this.codes = codes;
+		this.listDictionaries = listDictionaries;
+		this.listOffsets = listOffsets;
+		this.listCodes = listCodes;
+		this.indexes = new AttributeIndex[COLUMNS.length];
+		this.birthdates = new BirthdateIndex(dictionaries[Column.BIRTHDATE.ordinal()]);
+		this.listIndexes = new ListIndex[LISTS.length];
+	}
+
+	/* ---- Rows ---- */
+
+	/** Row of the person with this id, or -1. */
+	public int rowOf(String id) {
+		return ids.indexOf(id);
+	}
+
+	public String id(int row) {
+		return ids.idOf(row);
+	}
+
+	public Person person(int row) {
+		return new Person(this, row);
+	}
+
+	public int code(Column column, int row) {
+		return codes[column.ordinal()][row];
+	}
+
+	public String value(Column column, int row) {
+		return dictionaries[column.ordinal()].decode(codes[column.ordinal()][row]);
+	}
+
+	public StringDictionary dictionary(Column column) {
+		return dictionaries[column.ordinal()];
+	}
+
+	public StringDictionary dictionary(ListColumn list) {
+		return listDictionaries[list.ordinal()];
+	}
+
+	/** Position of the first code of row's values in {@link #listCode}. */
+	public int listStart(ListColumn list, int row) {
+		return listOffsets[list.ordinal()][row];
+	}
+
+	/** Position after the last code of row's values. */
+	public int listEnd(ListColumn list, int row) {
+		return listOffsets[list.ordinal()][row + 1];
+	}
+
+	public int listCode(ListColumn list, int position) {
+		return listCodes[list.ordinal()][position];
+	}
+
+	/** Read-only view of the values of a list field of a row. */
+	public List<String> values(ListColumn list, int row) {
+		int l = list.ordinal();
+		int start = listOffsets[l][row], end = listOffsets[l][row + 1];
+		if (start == end)
+			return Collections.emptyList();
+		return new AbstractList<String>() {
+			@Override
+			public String get(int i) {
+				if (i < 0 || i >= end - start)
+					throw new IndexOutOfBoundsException(i);
+				return listDictionaries[l].decode(listCodes[l][start + i]);
+			}
+
+			@Override
+			public int size() {
+				return end - start;
+			}
+		};
+	}
+
+	public void set(Column column, int row, String value) {
+		int c = column.ordinal();
+		int code = dictionaries[c].encode(value);
+		if (indexes[c] != null)
+			indexes[c].change(row, codes[c][row], code);
+		if (column == Column.BIRTHDATE)
+			birthdates.invalidate();
+		if (COLLATED.contains(column))
+			collation = null;
+		codes[c][row] = code;
+	}
+
+	/* ---- Indexes ---- */
+
+	public static boolean isIndexed(Column column) {
+		return INDEXED.contains(column);
+	}
+
+	/**
+	 * Rows whose {@code column} equals {@code value} ignoring case, like
+	 * {@link String#equalsIgnoreCase}, in O(result). The column must be
+	 * {@link #isIndexed indexed}.
+	 */
+	public PostingList lookup(Column column, String value) {
+		return index(column).lookup(value);
+	}
+
+	/** Number of distinct values of an indexed column, ignoring case. */
+	public int distinct(Column column) {
+		return index(column).distinct();
+	}
+
+	/** Rows that have {@code value} in a list field, ignoring case. */
+	public RowBitmap lookup(ListColumn list, String value) {
+		return index(list).lookup(value);
+	}
+
+	/** Number of distinct values of a list field, ignoring case. */
+	public int distinct(ListColumn list) {
+		return index(list).distinct();
+	}
+
+	/** Every row, the universe for {@link RowBitmap#not}. */
+	public RowBitmap all() {
+		return RowBitmap.range(0, size);
+	}
+
+	/** The birthdate of a row as an epoch day, or {@link #NO_DATE}. */
+	public int birthDay(int row) {
+		return birthdates.dayOf(codes[Column.BIRTHDATE.ordinal()][row]);
+	}
+
+	/** Rows born from {@code from} to {@code to}, both included, ascending. */
+	public PostingList bornBetween(LocalDate from, LocalDate to) {
+		return birthdates.between(epochDay(from), epochDay(to), codes[Column.BIRTHDATE.ordinal()], size);
+	}
+
+	/** Number of rows {@link #bornBetween} would return. */
+	public int countBornBetween(LocalDate from, LocalDate to) {
+		return birthdates.count(epochDay(from), epochDay(to), codes[Column.BIRTHDATE.ordinal()], size);
+	}
+
+	private static int epochDay(LocalDate date) {
+		long day = date.toEpochDay();
+		return (int) Math.max(NO_DATE + 1L, Math.min(Integer.MAX_VALUE, day));
+	}
+
+	/** The given rows in the order of {@link Person#compareTo}, ties by row. */
+	public int[] inCollationOrder(PostingList rows) {
+		return collation().sort(rows);
+	}
+
+	/** {@link Person#compareTo} of two rows. */
+	public int compareRows(int a, int b) {
+		return collation().compare(a, b);
+	}
+
+	private CollationOrder collation() {
+		CollationOrder order = collation;
+		if (order == null)
+			order = collation = new CollationOrder(this);
+		return order;
+	}
+
+	private AttributeIndex index(Column column) {
+		int c = column.ordinal();
+		AttributeIndex index = indexes[c];
+		if (index == null) {
+			if (!INDEXED.contains(column))
+				throw new IllegalArgumentException(column + " is not indexed");
+			index = new AttributeIndex(dictionaries[c]);
+			for (int row = 0; row < size; row++)
+				index.change(row, -1, codes[c][row]);
+			index.trimToSize();
+			indexes[c] = index;
+		}
+		return index;
+	}
+
+	private ListIndex index(ListColumn list) {
+		int l = list.ordinal();
+		ListIndex index = listIndexes[l];
+		if (index == null) {
+			index = new ListIndex(listDictionaries[l]);
+			for (int row = 0; row < size; row++) {
+				for (int i = listOffsets[l][row]; i < listOffsets[l][row + 1]; i++)
+					index.add(row, listCodes[l][i]);
+			}
+			index.trimToSize();
+			listIndexes[l] = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Replaces the values of a list field of a row. The codes of the later
+	 * rows move, so this costs as much as the column; loading only appends.
+	 */
+	public void setValues(ListColumn list, int row, List<String> values) {
+		int l = list.ordinal();
+		int[] offsets = listOffsets[l];
+		int start = offsets[row], end = offsets[row + 1];
+		int count = (values == null) ? 0 : values.size();
+		int shift = count - (end - start);
+		int total = offsets[size];
+
+		ListIndex index = listIndexes[l];
+		if (index != null) {
+			for (int i = start; i < end; i++)
+				index.remove(row, listCodes[l][i]);
+		}
+
+		int[] column = listCodes[l];
+		if (total + shift > column.length)
+			column = listCodes[l] = Arrays.copyOf(column, Math.max(total + shift, column.length * 2));
+		System.arraycopy(column, end, column, end + shift, total - end);
+		for (int i = 0; i < count; i++) {
+			column[start + i] = listDictionaries[l].encode(values.get(i));
+			if (index != null)
+				index.add(row, column[start + i]);
+		}
+		for (int r = row + 1; r <= size; r++)
+			offsets[r] += shift;
+	}
+
+	/**
+	 * Appends {@code person} as a new row and returns it; if someone with the
+	 * same id is already stored, nothing changes and their row is returned.
+	 */
+	public int add(Person person) {
+		int row = ids.add(person.getIdperson());
+		if (row < size)
+			return row;
+
+		if (size == codes[0].length) {
+			int capacity = Math.max(16, size * 2);
+			for (int c = 0; c < COLUMNS.length; c++)
+				codes[c] = Arrays.copyOf(codes[c], capacity);
+			for (int l = 0; l < LISTS.length; l++)
+				listOffsets[l] = Arrays.copyOf(listOffsets[l], capacity + 1);
+		}
+		for (int c = 0; c < COLUMNS.length; c++)
+			codes[c][row] = -1;
+		for (int l = 0; l < LISTS.length; l++)
+			listOffsets[l][size + 1] = listOffsets[l][size];
+		size++;
+		copy(person, row);
+		return row;
+	}
+
+	/** Drops the room kept for more rows, once loading is done. */
+	public void trimToSize() {
+		ids.trimToSize();
+		for (int c = 0; c < COLUMNS.length; c++) {
+			codes[c] = Arrays.copyOf(codes[c], size);
+			dictionaries[c].trimToSize();
+			if (indexes[c] != null)
+				indexes[c].trimToSize();
+		}
+		for (int l = 0; l < LISTS.length; l++) {
+			listOffsets[l] = Arrays.copyOf(listOffsets[l], size + 1);
+			listCodes[l] = Arrays.copyOf(listCodes[l], listOffsets[l][size]);
+			listDictionaries[l].trimToSize();
+			if (listIndexes[l] != null)
+				listIndexes[l].trimToSize();
+		}
+	}
+
+	/* Writes every field of person into row */
+	private void copy(Person person, int row) {
+		set(Column.NAME, row, person.getName());
+		set(Column.LASTNAME, row, person.getLastname());
+		set(Column.BIRTHDATE, row, person.getBirthdate());
+		set(Column.GENDER, row, person.getGender());
+		set(Column.BIRTHPLACE, row, person.getBirthplace());
+		set(Column.HOME, row, person.getHome());
+		set(Column.GROUPCODE, row, person.getGroupcode());
+		setValues(ListColumn.STUDIED_AT, row, person.getStudiedAt());
+		setValues(ListColumn.WORKPLACES, row, person.getWorkplaces());
+		setValues(ListColumn.FILMS, row, person.getFilms());
+	}
+
+	/* ---- Friends ---- */
+
+	/** Called by {@link GraphStore} when a graph of these people is published. */
+	void setGraph(FriendshipGraph graph) {
+		this.graph = graph;
+	}
+
+	/** The ids of the friends of a row in the current graph. */
+	public Set<String> friendsOf(int row) {
+		FriendshipGraph current = graph;
+		if (current == null)
+			return Collections.emptySet();
+		int v = (current.ids() == ids) ? row : current.indexOf(id(row));
+		return (v < 0 || v >= current.size()) ? Collections.emptySet() : current.friendsOf(v);
+	}
+
+	/* The id dictionary, which graphs of these people share */
+	IdIndex ids() {
+		return ids;
+	}
+
+	/* ---- Saved columns, for snapshots ---- */
+
+	int[] codes(Column column) {
+		return codes[column.ordinal()];
+	}
+
+	int[] listOffsets(ListColumn list) {
+		return listOffsets[list.ordinal()];
+	}
+
+	int[] listCodes(ListColumn list) {
+		return listCodes[list.ordinal()];
+	}
+
+	/* ---- Map ---- */
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object id) {
+		return id instanceof String && rowOf((String) id) >= 0;
+	}
+
+	@Override
+	public Person get(Object id) {
+		int row = (id instanceof String) ? rowOf((String) id) : -1;
+		return (row < 0) ? null : person(row);
+	}
+
+	/** Stores {@code person} under {@code id}, overwriting the fields of someone already there. */
+	@Override
+	public Person put(String id, Person person) {
+		int row = rowOf(id);
+		if (row < 0) {
+			add(person.getIdperson().equals(id) ? person : copyOf(person, id));
+			return null;
+		}
+		Person previous = person(row);
+		if (!previous.equals(person))
+			copy(person, row);
+		return previous;
+	}
+
+	@Override
+	public Person putIfAbsent(String id, Person person) {
+		int row = rowOf(id);
+		if (row >= 0)
+			return person(row);
+		add(person.getIdperson().equals(id) ? person : copyOf(person, id));
+		return null;
+	}
+
+	private static Person copyOf(Person person, String id) {
+		Person copy = new Person(id);
+		copy.setName(person.getName());
+		copy.setLastname(person.getLastname());
+		copy.setBirthdate(person.getBirthdate());
+		copy.setGender(person.getGender());
+		copy.setBirthplace(person.getBirthplace());
+		copy.setHome(person.getHome());
+		copy.setGroupcode(person.getGroupcode());
+		copy.setStudiedAt(person.getStudiedAt());
+		copy.setWorkplaces(person.getWorkplaces());
+		copy.setFilms(person.getFilms());
+		return copy;
+	}
+
+	/** Takes over the rows of {@code other}, such as a store read from a snapshot. */
+	void replaceWith(PeopleStore other) {
+		ids = other.ids;
+		size = other.size;
+		dictionaries = other.dictionaries;
+		codes = other.codes;
+		indexes = other.indexes;
+		birthdates = other.birthdates;
+		collation = null;
+		listDictionaries = other.listDictionaries;
+		listOffsets = other.listOffsets;
+		listCodes = other.listCodes;
+		listIndexes = other.listIndexes;
+		graph = other.graph;
+	}
+
+	/** Forgets everyone; the graph published for them stays as it was. */
+	@Override
+	public void clear() {
+		ids = new IdIndex();
+		size = 0;
+		dictionaries = new StringDictionary[COLUMNS.length];
+		codes = new int[COLUMNS.length][0];
+		indexes = new AttributeIndex[COLUMNS.length];
+		for (int c = 0; c < COLUMNS.length; c++)
+			dictionaries[c] = new StringDictionary();
+		birthdates = new BirthdateIndex(dictionaries[Column.BIRTHDATE.ordinal()]);
+		collation = null;
+		listDictionaries = new StringDictionary[LISTS.length];
+		listOffsets = new int[LISTS.length][1];
+		listCodes = new int[LISTS.length][16];
+		listIndexes = new ListIndex[LISTS.length];
+		for (int l = 0; l < LISTS.length; l++)
+			listDictionaries[l] = new StringDictionary();
+		graph = null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Person>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Person>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, Person>> iterator() {
+				return new Iterator<Map.Entry<String, Person>>() {
+					private int row;
+
+					@Override
+					public boolean hasNext() {
+						return row < size;
+					}
+
+					@Override
+					public Map.Entry<String, Person> next() {
+						if (row >= size)
+							throw new NoSuchElementException();
+						Person person = person(row++);
+						return new AbstractMap.SimpleImmutableEntry<>(person.getIdperson(), person);
+					}
+				};
+			}
+		};
+	}
+}
@@ -1,11 +1,20 @@
 package main;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * A person being loaded keeps its own fields. Once it is in a
+ * {@link PeopleStore}, a person is only a view of its row: the getters and
+ * setters read and write the store's columns, and the friends come from the
+ * current graph.
+ */
 public class Person implements Comparable<Person> {
 
+	private final PeopleStore store;
+	private final int row;
+
 	private String idperson;
 	private String name;
 	private String lastname;
@@ -17,127 +26,189 @@ public class Person implements Comparable<Person> {
 	private List<String> workplaces;
 	private List<String> films;
 	private String groupcode;
-	private Set<String> friends = new HashSet<>();
+	private Set<String> friends = Collections.emptySet();
 
 
 	public Person(String idperson) {
+		this.store = null;
+		this.row = -1;
 		this.idperson = idperson;
 	}
 
+	Person(PeopleStore store, int row) {
+		this.store = store;
+		this.row = row;
+	}
+
 	public String getIdperson() {
-		return idperson;
+		return (store == null) ? idperson : store.id(row);
 	}
 
 	public void setIdperson(String idperson) {
+		if (store != null)
+			throw new UnsupportedOperationException("The id of a stored person cannot change");
 		this.idperson = idperson;
 	}
 
 	public String getName() {
-		return name;
+		return (store == null) ? name : store.value(PeopleStore.Column.NAME, row);
 	}
 
 	public void setName(String name) {
-		this.name = name;
+		if (store == null)
+			this.name = name;
+		else
+			store.set(PeopleStore.Column.NAME, row, name);
 	}
 
 	public String getLastname() {
-		return lastname;
+		return (store == null) ? lastname : store.value(PeopleStore.Column.LASTNAME, row);
 	}
 
 	public void setLastname(String lastname) {
-		this.lastname = lastname;
+		if (store == null)
+			this.lastname = lastname;
+		else
+			store.set(PeopleStore.Column.LASTNAME, row, lastname);
 	}
 
 	public String getBirthdate() {
-		return birthdate;
+		return (store == null) ? birthdate : store.value(PeopleStore.Column.BIRTHDATE, row);
 	}
 
 	public void setBirthdate(String birthdate) {
-		this.birthdate = birthdate;
+		if (store == null)
+			this.birthdate = birthdate;
+		else
+			store.set(PeopleStore.Column.BIRTHDATE, row, birthdate);
 	}
 
 	public String getGender() {
-		return gender;
+		return (store == null) ? gender : store.value(PeopleStore.Column.GENDER, row);
 	}
 
 	public void setGender(String gender) {
-		this.gender = gender;
+		if (store == null)
+			this.gender = gender;
+		else
+			store.set(PeopleStore.Column.GENDER, row, gender);
 	}
 
 	public String getBirthplace() {
-		return birthplace;
+		return (store == null) ? birthplace : store.value(PeopleStore.Column.BIRTHPLACE, row);
 	}
 
 	public void setBirthplace(String birthplace) {
-		this.birthplace = birthplace;
+		if (store == null)
+			this.birthplace = birthplace;
+		else
+			store.set(PeopleStore.Column.BIRTHPLACE, row, birthplace);
 	}
 
 	public String getHome() {
-		return home;
+		return (store == null) ? home : store.value(PeopleStore.Column.HOME, row);
 	}
 
 	public void setHome(String home) {
-		this.home = home;
+		if (store == null)
+			this.home = home;
+		else
+			store.set(PeopleStore.Column.HOME, row, home);
 	}
 
 	public List<String> getStudiedAt() {
-		return studiedAt;
+		return (store == null) ? studiedAt : store.values(PeopleStore.ListColumn.STUDIED_AT, row);
 	}
 
 	public void setStudiedAt(List<String> studiedAt) {
-		this.studiedAt = studiedAt;
+		if (store == null)
+			this.studiedAt = studiedAt;
+		else
+			store.setValues(PeopleStore.ListColumn.STUDIED_AT, row, studiedAt);
 	}
 
 	public List<String> getWorkplaces() {
-		return workplaces;
+		return (store == null) ? workplaces : store.values(PeopleStore.ListColumn.WORKPLACES, row);
 	}
 
 	public void setWorkplaces(List<String> workplaces) {
-		this.workplaces = workplaces;
+		if (store == null)
+			this.workplaces = workplaces;
+		else
+			store.setValues(PeopleStore.ListColumn.WORKPLACES, row, workplaces);
 	}
 
 	public List<String> getFilms() {
-		return films;
+		return (store == null) ? films : store.values(PeopleStore.ListColumn.FILMS, row);
 	}
 
 	public void setFilms(List<String> films) {
-		this.films = films;
+		if (store == null)
+			this.films = films;
+		else
+			store.setValues(PeopleStore.ListColumn.FILMS, row, films);
 	}
 
 	public String getGroupcode() {
-		return groupcode;
+		return (store == null) ? groupcode : store.value(PeopleStore.Column.GROUPCODE, row);
 	}
 
 	public void setGroupcode(String groupcode) {
-		this.groupcode = groupcode;
+		if (store == null)
+			this.groupcode = groupcode;
+		else
+			store.set(PeopleStore.Column.GROUPCODE, row, groupcode);
 	}
 
 	@Override
 	public String toString() {
-		return "Person [idperson=" + idperson + ", name=" + name + ", lastname=" + lastname + ", birthdate=" + birthdate
-				+ ", gender=" + gender + ", birthplace=" + birthplace + ", home=" + home + ", studiedAt=" + studiedAt
-				+ ", workplaces=" + workplaces + ", films=" + films + ", groupcode=" + groupcode + "]";
+		return "Person [idperson=" + getIdperson() + ", name=" + getName() + ", lastname=" + getLastname()
+				+ ", birthdate=" + getBirthdate() + ", gender=" + getGender() + ", birthplace=" + getBirthplace()
+				+ ", home=" + getHome() + ", studiedAt=" + getStudiedAt() + ", workplaces=" + getWorkplaces()
+				+ ", films=" + getFilms() + ", groupcode=" + getGroupcode() + "]";
 	}
 
 	public Set<String> getFriends() {
-		return friends;
+		return (store == null) ? friends : store.friendsOf(row);
 	}
 
+	/** Only for a person being built; a stored person's friends are the graph's. */
 	public void setFriends(Set<String> friends) {
+		if (store != null)
+			throw new UnsupportedOperationException("Friendships of stored people are loaded into the graph");
 		this.friends = friends;
 	}
 
+	/* Two views of the same row are the same person */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (store == null || !(o instanceof Person))
+			return false;
+		Person other = (Person) o;
+		return store == other.store && row == other.row;
+	}
+
+	@Override
+	public int hashCode() {
+		return (store == null) ? System.identityHashCode(this) : System.identityHashCode(store) * 31 + row;
+	}
+
     @Override
     public int compareTo(Person other) {
+        if (store != null && store == other.store)
+            return store.compareRows(row, other.row);
+
         int c;
 
-        c = this.birthplace.compareToIgnoreCase(other.birthplace);
+        c = this.getBirthplace().compareToIgnoreCase(other.getBirthplace());
         if (c != 0) return c;
 
-        c = this.lastname.compareToIgnoreCase(other.lastname);
+        c = this.getLastname().compareToIgnoreCase(other.getLastname());
         if (c != 0) return c;
 
-        return this.name.compareToIgnoreCase(other.name);
+        return this.getName().compareToIgnoreCase(other.getName());
     }
 
 }
@@ -0,0 +1,68 @@
+package main;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * People passing every one of a set of {@link QueryFilter}s, such as "born in
+ * Bilbao, studied at UPV and has seen Alien". The query is planned against
+ * the indexes of a {@link PeopleStore} by {@link #plan}.
+ */
+public class PersonQuery {
+
+	private final List<QueryFilter> filters = new ArrayList<>();
+
+	public PersonQuery where(QueryFilter filter) {
+		filters.add(filter);
+		return this;
+	}
+
+	public PersonQuery bornIn(Collection<String> cities) {
+		return where(QueryFilter.attribute(PeopleStore.Column.BIRTHPLACE, cities));
+	}
+
+	public PersonQuery livingIn(Collection<String> homes) {
+		return where(QueryFilter.attribute(PeopleStore.Column.HOME, homes));
+	}
+
+	public PersonQuery bornBetween(LocalDate from, LocalDate to) {
+		return where(QueryFilter.bornBetween(from, to));
+	}
+
+	public PersonQuery studiedAt(Collection<String> places) {
+		return where(QueryFilter.listContains(PeopleStore.ListColumn.STUDIED_AT, places));
+	}
+
+	public PersonQuery workedAt(Collection<String> places) {
+		return where(QueryFilter.listContains(PeopleStore.ListColumn.WORKPLACES, places));
+	}
+
+	public PersonQuery saw(Collection<String> films) {
+		return where(QueryFilter.listContains(PeopleStore.ListColumn.FILMS, films));
+	}
+
+	public PersonQuery friendOf(String id) {
+		return where(QueryFilter.friendOf(id));
+	}
+
+	public List<QueryFilter> getFilters() {
+		return Collections.unmodifiableList(filters);
+	}
+
+	public boolean isEmpty() {
+		return filters.isEmpty();
+	}
+
+	/** Plans the query on {@code people}, with friendships from {@code graph}. */
+	public QueryPlan plan(PeopleStore people, FriendshipGraph graph) {
+		return new QueryPlan(people, graph, filters);
+	}
+
+	/** The rows of the people passing the query. */
+	public PostingList run(PeopleStore people, FriendshipGraph graph) {
+		return plan(people, graph).execute();
+	}
+}
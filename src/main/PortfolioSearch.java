@@ -0,0 +1,247 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs every longest-path strategy side by side on one incumbent and lets a
+ * bandit decide where the threads go.
+ *
+ * Time is handed out in slices. Before each slice a worker picks a strategy
+ * (an arm) with UCB1, where the reward of a slice is how much it lengthened
+ * the incumbent, relative to its length, per second. Arms that keep
+ * improving get more slices, and so more threads, while every arm is still
+ * tried now and then.
+ *
+ * The two DFS arms never lose work: they keep a {@link SearchFrontier} that a
+ * slice takes subtrees from and puts back whatever it did not finish, so
+ * their search goes on across slices and threads, and if either frontier
+ * runs out the result is optimal and the run ends. Random restarts get
+ * longer slices while they keep improving the incumbent and shorter ones
+ * while they do not. Color coding looks for a path one person longer than
+ * the incumbent, and retires for the rest of the run once its tables for
+ * that length no longer fit in the worker's share of the heap.
+ */
+public class PortfolioSearch {
+
+	/** The strategies the scheduler chooses from. */
+	public enum Arm {
+		EXACT_DFS, HEURISTIC_DFS, RANDOM_RESTARTS, LOCAL_SEARCH, COLOR_CODING
+	}
+
+	private static final long QUANTUM = TimeUnit.MILLISECONDS.toNanos(100);
+	static final long MIN_RESTART = TimeUnit.MILLISECONDS.toNanos(5);
+	static final long MAX_RESTART = TimeUnit.SECONDS.toNanos(2);
+	static final long INITIAL_RESTART = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final double EXPLORATION = Math.sqrt(2);
+
+	private final FriendshipGraph graph;
+	private final int threads;
+
+	private final ThreadLocal<PathSearchEngine> engines;
+	private final ThreadLocal<PathImprover> improvers;
+	private final ThreadLocal<ColorCodingSearch> colorCoders;
+	private final ThreadLocal<Random> randoms;
+
+	private int source;
+	private int target;
+	private LongestPathResult best;
+	private long deadline;
+	private final AtomicBoolean done = new AtomicBoolean();
+
+	private final SearchFrontier[] frontiers = new SearchFrontier[2];
+	private volatile long restartSlice = INITIAL_RESTART;
+	/* Paths only get longer, and so do color coding's tables: once they do not fit, they never will */
+	private volatile boolean colorCodingFits = true;
+
+	/* Bandit state, guarded by this */
+	private final int[] pulls = new int[Arm.values().length];
+	private final double[] rewards = new double[Arm.values().length];
+	private int totalPulls;
+
+	public PortfolioSearch(FriendshipGraph graph, int threads) {
+		this.graph = graph;
+		this.threads = Math.max(1, threads);
+		this.engines = ThreadLocal.withInitial(() -> new PathSearchEngine(graph));
+		this.improvers = ThreadLocal.withInitial(() -> new PathImprover(graph, System.nanoTime()));
+		this.colorCoders = ThreadLocal.withInitial(() -> new ColorCodingSearch(graph, 1));
+		this.randoms = ThreadLocal.withInitial(() -> new Random(System.nanoTime()));
+	}
+
+	/** Slices each arm has run so far. */
+	public synchronized int getPulls(Arm arm) {
+		return pulls[arm.ordinal()];
+	}
+
+	/** Current length of a random restart, in nanoseconds. */
+	public long getRestartSlice() {
+		return restartSlice;
+	}
+
+	/**
+	 * Searches source-target paths into {@code best} until the deadline.
+	 * Returns true if a DFS arm covered the whole search tree, i.e. the result
+	 * is optimal.
+	 */
+	public boolean search(int source, int target, long deadline, LongestPathResult best)
+			throws InterruptedException {
+		this.source = source;
+		this.target = target;
+		this.best = best;
+		this.deadline = deadline;
+		frontiers[0] = SearchFrontier.from(source);
+		frontiers[1] = SearchFrontier.from(source);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Void>> workers = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				workers.add(() -> {
+					while (!done.get() && System.nanoTime() < deadline)
+						pull(choose());
+					return null;
+				});
+			}
+			for (Future<Void> worker : pool.invokeAll(workers))
+				worker.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return frontiers[0].isExhausted() || frontiers[1].isExhausted();
+	}
+
+	/* UCB1 over the arms that can run now; a slice counts as pulled as soon as it is chosen */
+	private synchronized Arm choose() {
+		Arm chosen = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		double maxMean = 1e-9;
+		for (Arm arm : Arm.values()) {
+			int i = arm.ordinal();
+			if (pulls[i] > 0)
+				maxMean = Math.max(maxMean, rewards[i] / pulls[i]);
+		}
+		for (Arm arm : Arm.values()) {
+			if (!eligible(arm))
+				continue;
+			int i = arm.ordinal();
+			if (pulls[i] == 0) {
+				chosen = arm;
+				break;
+			}
+			double score = rewards[i] / pulls[i] / maxMean
+					+ EXPLORATION * Math.sqrt(Math.log(totalPulls) / pulls[i]);
+			if (score > bestScore) {
+				bestScore = score;
+				chosen = arm;
+			}
+		}
+		if (chosen == null)
+			chosen = Arm.RANDOM_RESTARTS;
+		pulls[chosen.ordinal()]++;
+		totalPulls++;
+		return chosen;
+	}
+
+	private boolean eligible(Arm arm) {
+		switch (arm) {
+		case EXACT_DFS:
+			return frontiers[0].size() > 0;
+		case HEURISTIC_DFS:
+			return frontiers[1].size() > 0;
+		case LOCAL_SEARCH:
+			return best.bestLength() >= 3;
+		case COLOR_CODING:
+			return colorCodingFits && best.bestLength() < ColorCodingSearch.MAX_PEOPLE;
+		default:
+			return true;
+		}
+	}
+
+	private synchronized void reward(Arm arm, double reward) {
+		rewards[arm.ordinal()] += reward;
+	}
+
+	private void pull(Arm arm) throws InterruptedException {
+		int before = best.bestLength();
+		long start = System.nanoTime();
+		long end = Math.min(deadline, start + ((arm == Arm.RANDOM_RESTARTS) ? restartSlice : QUANTUM));
+
+		switch (arm) {
+		case EXACT_DFS:
+			continueSearch(frontiers[0], SearchStrategy.PRUNING, end);
+			break;
+		case HEURISTIC_DFS:
+			continueSearch(frontiers[1], SearchStrategy.HEURISTICS, end);
+			break;
+		case RANDOM_RESTARTS:
+			engines.get().explore(new int[] { source }, 1, target, SearchStrategy.RANDOMIZED, end, best,
+					randoms.get());
+			adaptRestartSlice(best.bestLength() > before);
+			break;
+		case LOCAL_SEARCH:
+			improvers.get().improve(best, end, done);
+			break;
+		case COLOR_CODING:
+			// the incumbent may have grown past what color coding handles since the arm was chosen
+			if (before < ColorCodingSearch.MAX_PEOPLE)
+				extendByColorCoding(before + 1, end);
+			break;
+		}
+
+		double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+		reward(arm, (best.bestLength() - before) / (double) Math.max(1, before) / seconds);
+	}
+
+	/* Every worker may hold its tables at once, so each gets its share of half the heap */
+	private void extendByColorCoding(int people, long end) throws InterruptedException {
+		ColorCodingSearch search = colorCoders.get();
+		if (search.tableBytes(source, target, people) > Runtime.getRuntime().maxMemory() / 2 / threads) {
+			colorCodingFits = false;
+			return;
+		}
+		try {
+			int[] path = search.findPath(source, target, people, 0.01, end);
+			if (path != null)
+				best.offer(path, path.length);
+		} catch (IllegalArgumentException e) {
+			colorCodingFits = false;
+		}
+	}
+
+	/* Explores subtrees of the frontier until the slice ends, putting back what is left */
+	private void continueSearch(SearchFrontier frontier, SearchStrategy strategy, long end) {
+		PathSearchEngine engine = engines.get();
+		while (System.nanoTime() < end) {
+			SearchFrontier.Subtree subtree = frontier.poll();
+			if (subtree == null)
+				break;
+			try {
+				engine.explore(subtree.prefix(), subtree.size(), target, strategy, end, best, null);
+				engine.captureFrontier(frontier);
+			} finally {
+				frontier.finished();
+			}
+		}
+		if (frontier.isExhausted())
+			done.set(true);
+	}
+
+	private void adaptRestartSlice(boolean improved) {
+		restartSlice = nextRestartSlice(restartSlice, improved);
+	}
+
+	/** Length of the next random restart: longer after one that improved the incumbent, shorter otherwise. */
+	static long nextRestartSlice(long slice, boolean improved) {
+		return improved ? Math.min(MAX_RESTART, slice * 3 / 2) : Math.max(MIN_RESTART, slice * 4 / 5);
+	}
+}
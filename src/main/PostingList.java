@@ -0,0 +1,98 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Ascending list of row numbers of a {@link PeopleStore}, as returned by an
+ * index lookup.
+ *
+ * The lists handed out are snapshots: an index only ever appends past their
+ * end or replaces its array, so a list read once does not change under the
+ * caller when more people are loaded.
+ */
+public final class PostingList {
+
+	public static final PostingList EMPTY = new PostingList(new int[0], 0);
+
+	private int[] rows;
+	private int size;
+
+	PostingList() {
+		this(new int[4], 0);
+	}
+
+	private PostingList(int[] rows, int size) {
+		this.rows = rows;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** The i-th row, in ascending order. */
+	public int get(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException(i);
+		return rows[i];
+	}
+
+	public boolean contains(int row) {
+		return Arrays.binarySearch(rows, 0, size, row) >= 0;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(rows, size);
+	}
+
+	/* A list over rows that are already ascending and distinct; the array is not copied */
+	static PostingList of(int[] rows) {
+		return (rows.length == 0) ? EMPTY : new PostingList(rows, rows.length);
+	}
+
+	/* ---- Updates, by the index that owns the list ---- */
+
+	/* The rows as they are now, unaffected by later updates */
+	PostingList snapshot() {
+		return (size == 0) ? EMPTY : new PostingList(rows, size);
+	}
+
+	void insert(int row) {
+		if (size == 0 || rows[size - 1] < row) {
+			if (size == rows.length)
+				rows = Arrays.copyOf(rows, Math.max(4, size * 2));
+			rows[size++] = row;
+			return;
+		}
+		int at = Arrays.binarySearch(rows, 0, size, row);
+		if (at >= 0)
+			return;
+		at = -at - 1;
+		int[] copy = new int[Math.max(rows.length, size + 1)];
+		System.arraycopy(rows, 0, copy, 0, at);
+		copy[at] = row;
+		System.arraycopy(rows, at, copy, at + 1, size - at);
+		rows = copy;
+		size++;
+	}
+
+	void remove(int row) {
+		int at = Arrays.binarySearch(rows, 0, size, row);
+		if (at < 0)
+			return;
+		int[] copy = new int[rows.length];
+		System.arraycopy(rows, 0, copy, 0, at);
+		System.arraycopy(rows, at + 1, copy, at, size - at - 1);
+		rows = copy;
+		size--;
+	}
+
+	void trimToSize() {
+		if (rows.length != size)
+			rows = Arrays.copyOf(rows, size);
+	}
+}
@@ -0,0 +1,402 @@
+package main;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * One condition of a {@link PersonQuery}. A filter can estimate how many
+ * people pass it from its index alone, read all of them from the index, or
+ * test people one by one; {@link QueryPlan} picks among these.
+ */
+public abstract class QueryFilter {
+
+	/** Short description for plans, such as "birthplace in [Bilbao]". */
+	public abstract String describe();
+
+	/* People expected to pass; exact wherever the index keeps counts */
+	abstract int estimate(PeopleStore people, FriendshipGraph graph);
+
+	/* Every row that passes, read from the index */
+	abstract RowBitmap rows(PeopleStore people, FriendshipGraph graph);
+
+	/* Cost of rows() in rows read, for a filter estimated to pass matches people */
+	long readCost(PeopleStore people, int matches) {
+		return matches;
+	}
+
+	/*
+	 * A test of whether one row passes, without reading a whole index entry.
+	 * Whatever does not depend on the row is resolved here, once per plan run.
+	 */
+	abstract IntPredicate probe(PeopleStore people, FriendshipGraph graph);
+
+	@Override
+	public String toString() {
+		return describe();
+	}
+
+	/* ---- Filters ---- */
+
+	/** People whose indexed {@code column} is any of {@code values}, ignoring case. */
+	public static QueryFilter attribute(PeopleStore.Column column, Collection<String> values) {
+		if (!PeopleStore.isIndexed(column))
+			throw new IllegalArgumentException(column + " is not indexed");
+		return new AttributeFilter(column, values);
+	}
+
+	/** People whose indexed {@code column} is exactly one of {@code values}, case included. */
+	public static QueryFilter attributeEquals(PeopleStore.Column column, Collection<String> values) {
+		if (!PeopleStore.isIndexed(column))
+			throw new IllegalArgumentException(column + " is not indexed");
+		return new ExactAttributeFilter(column, values);
+	}
+
+	/** People born from {@code from} to {@code to}, both included. */
+	public static QueryFilter bornBetween(LocalDate from, LocalDate to) {
+		return new BirthdateFilter(from, to);
+	}
+
+	/** People with any of {@code values} in a list field, ignoring case. */
+	public static QueryFilter listContains(PeopleStore.ListColumn list, Collection<String> values) {
+		return new ListFilter(list, values);
+	}
+
+	/** Friends of the person with this id in the graph. */
+	public static QueryFilter friendOf(String id) {
+		return new FriendFilter(id);
+	}
+
+	/** People who do not pass {@code filter}. */
+	public static QueryFilter not(QueryFilter filter) {
+		return new NotFilter(filter);
+	}
+
+	/*
+	 * Whether a dictionary code's value is one of the folded values. Each code
+	 * is decoded and folded once; codes added after the matcher was made are
+	 * decoded every time.
+	 */
+	private static final class CodeMatcher {
+		private static final byte UNKNOWN = 0, MATCH = 1, MISS = 2;
+
+		private final StringDictionary dictionary;
+		private final Set<String> folded;
+		private final byte[] known;
+
+		CodeMatcher(StringDictionary dictionary, Set<String> folded) {
+			this.dictionary = dictionary;
+			this.folded = folded;
+			this.known = new byte[dictionary.size()];
+		}
+
+		boolean matches(int code) {
+			if (code < 0)
+				return false;
+			if (code >= known.length)
+				return folded.contains(AttributeIndex.fold(dictionary.decode(code)));
+			if (known[code] == UNKNOWN)
+				known[code] = folded.contains(AttributeIndex.fold(dictionary.decode(code))) ? MATCH : MISS;
+			return known[code] == MATCH;
+		}
+	}
+
+	/* Values ignoring case, first spelling kept */
+	private static List<String> distinct(Collection<String> values) {
+		Set<String> folded = new LinkedHashSet<>();
+		List<String> kept = new ArrayList<>();
+		for (String value : values) {
+			if (value != null && folded.add(AttributeIndex.fold(value)))
+				kept.add(value);
+		}
+		return kept;
+	}
+
+	private static final class AttributeFilter extends QueryFilter {
+		private final PeopleStore.Column column;
+		private final List<String> values;
+		private final Set<String> folded = new LinkedHashSet<>();
+
+		AttributeFilter(PeopleStore.Column column, Collection<String> values) {
+			this.column = column;
+			this.values = distinct(values);
+			for (String value : this.values)
+				folded.add(AttributeIndex.fold(value));
+		}
+
+		@Override
+		public String describe() {
+			return column.name().toLowerCase() + " in " + values;
+		}
+
+		@Override
+		int estimate(PeopleStore people, FriendshipGraph graph) {
+			int count = 0;
+			for (String value : values)
+				count += people.lookup(column, value).size();
+			return count;
+		}
+
+		@Override
+		RowBitmap rows(PeopleStore people, FriendshipGraph graph) {
+			RowBitmap rows = new RowBitmap();
+			for (String value : values)
+				rows = rows.or(RowBitmap.of(people.lookup(column, value)));
+			return rows;
+		}
+
+		@Override
+		IntPredicate probe(PeopleStore people, FriendshipGraph graph) {
+			CodeMatcher matcher = new CodeMatcher(people.dictionary(column), folded);
+			return row -> matcher.matches(people.code(column, row));
+		}
+	}
+
+	/* Read through the case-insensitive index, keeping the rows whose code is one of the values' */
+	private static final class ExactAttributeFilter extends QueryFilter {
+		private final PeopleStore.Column column;
+		private final List<String> values = new ArrayList<>();
+
+		ExactAttributeFilter(PeopleStore.Column column, Collection<String> values) {
+			this.column = column;
+			for (String value : new LinkedHashSet<>(values)) {
+				if (value != null)
+					this.values.add(value);
+			}
+		}
+
+		@Override
+		public String describe() {
+			return column.name().toLowerCase() + " exactly in " + values;
+		}
+
+		/* Counts every spelling of the values, so it is exact unless other spellings occur */
+		@Override
+		int estimate(PeopleStore people, FriendshipGraph graph) {
+			int count = 0;
+			for (String value : distinct(values))
+				count += people.lookup(column, value).size();
+			return count;
+		}
+
+		@Override
+		RowBitmap rows(PeopleStore people, FriendshipGraph graph) {
+			int[] codes = codes(people);
+			RowBitmap rows = new RowBitmap();
+			for (String value : distinct(values)) {
+				PostingList spellings = people.lookup(column, value);
+				RowBitmap kept = new RowBitmap();
+				for (int i = 0; i < spellings.size(); i++) {
+					int row = spellings.get(i);
+					if (Arrays.binarySearch(codes, people.code(column, row)) >= 0)
+						kept.add(row);
+				}
+				rows = rows.or(kept);
+			}
+			return rows;
+		}
+
+		@Override
+		IntPredicate probe(PeopleStore people, FriendshipGraph graph) {
+			int[] codes = codes(people);
+			return row -> Arrays.binarySearch(codes, people.code(column, row)) >= 0;
+		}
+
+		/* Dictionary codes of the values in the store, ascending */
+		private int[] codes(PeopleStore people) {
+			StringDictionary dictionary = people.dictionary(column);
+			int[] codes = new int[values.size()];
+			int count = 0;
+			for (String value : values) {
+				int code = dictionary.codeOf(value);
+				if (code >= 0)
+					codes[count++] = code;
+			}
+			codes = Arrays.copyOf(codes, count);
+			Arrays.sort(codes);
+			return codes;
+		}
+	}
+
+	private static final class BirthdateFilter extends QueryFilter {
+		private final LocalDate from;
+		private final LocalDate to;
+
+		BirthdateFilter(LocalDate from, LocalDate to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public String describe() {
+			if (from.equals(LocalDate.MIN))
+				return "born until " + to;
+			if (to.equals(LocalDate.MAX))
+				return "born from " + from;
+			return "born from " + from + " to " + to;
+		}
+
+		@Override
+		int estimate(PeopleStore people, FriendshipGraph graph) {
+			return people.countBornBetween(from, to);
+		}
+
+		@Override
+		RowBitmap rows(PeopleStore people, FriendshipGraph graph) {
+			return RowBitmap.of(people.bornBetween(from, to));
+		}
+
+		@Override
+		IntPredicate probe(PeopleStore people, FriendshipGraph graph) {
+			long first = from.toEpochDay();
+			long last = to.toEpochDay();
+			return row -> {
+				int day = people.birthDay(row);
+				return day != PeopleStore.NO_DATE && day >= first && day <= last;
+			};
+		}
+	}
+
+	private static final class ListFilter extends QueryFilter {
+		private final PeopleStore.ListColumn list;
+		private final List<String> values;
+		private final Set<String> folded = new LinkedHashSet<>();
+
+		ListFilter(PeopleStore.ListColumn list, Collection<String> values) {
+			this.list = list;
+			this.values = distinct(values);
+			for (String value : this.values)
+				folded.add(AttributeIndex.fold(value));
+		}
+
+		@Override
+		public String describe() {
+			return list.name().toLowerCase() + " has any of " + values;
+		}
+
+		/* Counts a person once per value they list, so it is exact for a single value */
+		@Override
+		int estimate(PeopleStore people, FriendshipGraph graph) {
+			int count = 0;
+			for (String value : values)
+				count += people.lookup(list, value).cardinality();
+			return count;
+		}
+
+		@Override
+		RowBitmap rows(PeopleStore people, FriendshipGraph graph) {
+			RowBitmap rows = new RowBitmap();
+			for (String value : values)
+				rows = rows.or(people.lookup(list, value));
+			return rows;
+		}
+
+		/* The bitmaps are kept whole, so reading one is a merge of its chunks */
+		@Override
+		long readCost(PeopleStore people, int matches) {
+			return (values.size() > 1) ? matches / 8 : 1;
+		}
+
+		@Override
+		IntPredicate probe(PeopleStore people, FriendshipGraph graph) {
+			CodeMatcher matcher = new CodeMatcher(people.dictionary(list), folded);
+			return row -> {
+				for (int i = people.listStart(list, row); i < people.listEnd(list, row); i++) {
+					if (matcher.matches(people.listCode(list, i)))
+						return true;
+				}
+				return false;
+			};
+		}
+	}
+
+	private static final class FriendFilter extends QueryFilter {
+		private final String id;
+
+		FriendFilter(String id) {
+			this.id = id;
+		}
+
+		@Override
+		public String describe() {
+			return "friend of " + id;
+		}
+
+		@Override
+		int estimate(PeopleStore people, FriendshipGraph graph) {
+			int v = graph.indexOf(id);
+			return (v < 0) ? 0 : graph.degree(v);
+		}
+
+		@Override
+		RowBitmap rows(PeopleStore people, FriendshipGraph graph) {
+			RowBitmap rows = new RowBitmap();
+			int v = graph.indexOf(id);
+			if (v < 0)
+				return rows;
+			int[] friends = new int[graph.degree(v)];
+			int count = 0;
+			for (int e = graph.start(v); e < graph.end(v); e++) {
+				int row = graph.isGraphOf(people) ? graph.target(e) : people.rowOf(graph.idOf(graph.target(e)));
+				if (row >= 0)
+					friends[count++] = row;
+			}
+			Arrays.sort(friends, 0, count);
+			for (int i = 0; i < count; i++)
+				rows.add(friends[i]);
+			return rows;
+		}
+
+		@Override
+		IntPredicate probe(PeopleStore people, FriendshipGraph graph) {
+			int v = graph.indexOf(id);
+			if (v < 0)
+				return row -> false;
+			boolean aligned = graph.isGraphOf(people);
+			return row -> {
+				int w = aligned ? row : graph.indexOf(people.id(row));
+				return w >= 0 && graph.areFriends(v, w);
+			};
+		}
+	}
+
+	private static final class NotFilter extends QueryFilter {
+		private final QueryFilter filter;
+
+		NotFilter(QueryFilter filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public String describe() {
+			return "not (" + filter.describe() + ")";
+		}
+
+		@Override
+		int estimate(PeopleStore people, FriendshipGraph graph) {
+			return Math.max(0, people.size() - filter.estimate(people, graph));
+		}
+
+		@Override
+		RowBitmap rows(PeopleStore people, FriendshipGraph graph) {
+			return filter.rows(people, graph).not(people.size());
+		}
+
+		/* The complement flips whole words */
+		@Override
+		long readCost(PeopleStore people, int matches) {
+			int size = people.size();
+			return filter.readCost(people, size - matches) + size / 64;
+		}
+
+		@Override
+		IntPredicate probe(PeopleStore people, FriendshipGraph graph) {
+			return filter.probe(people, graph).negate();
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * How a {@link PersonQuery} is run. Its filters go most selective first, as
+ * estimated from the indexes; the first one is read from its index, and each
+ * later one either reads its index and intersects, or tests the people still
+ * left, whichever is cheaper. Every step keeps the cost the plan expected
+ * next to the cost of running it. Costs count one per row read from an
+ * index or intersected, and {@value #TEST_COST} per person tested.
+ */
+public final class QueryPlan {
+
+	static final int TEST_COST = 4;
+
+	/** How a step finds its rows. */
+	public enum Access {
+		/** Read every match from the filter's index and intersect. */
+		INDEX,
+		/** Test each person still left. */
+		PROBE
+	}
+
+	/** One filter of the plan. */
+	public static final class Step {
+		private final QueryFilter filter;
+		private final Access access;
+		private final int matches;
+		private final long estimatedRows;
+		private final long estimatedCost;
+		private long actualRows = -1;
+		private long actualCost;
+		private long nanos;
+
+		Step(QueryFilter filter, Access access, int matches, long estimatedRows, long estimatedCost) {
+			this.filter = filter;
+			this.access = access;
+			this.matches = matches;
+			this.estimatedRows = estimatedRows;
+			this.estimatedCost = estimatedCost;
+		}
+
+		public QueryFilter getFilter() {
+			return filter;
+		}
+
+		public Access getAccess() {
+			return access;
+		}
+
+		/** People passing the filter alone, as estimated from its index. */
+		public int getMatches() {
+			return matches;
+		}
+
+		/** People expected to be left after this step. */
+		public long getEstimatedRows() {
+			return estimatedRows;
+		}
+
+		public long getEstimatedCost() {
+			return estimatedCost;
+		}
+
+		/** People left after this step, or -1 before the plan runs. */
+		public long getActualRows() {
+			return actualRows;
+		}
+
+		public long getActualCost() {
+			return actualCost;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			String actual = (actualRows < 0) ? "not run"
+					: String.format("%d left, cost %d, %.3f ms", actualRows, actualCost, nanos / 1e6);
+			return String.format("%-5s %s: estimated %d left, cost %d | actual %s", access, filter.describe(),
+					estimatedRows, estimatedCost, actual);
+		}
+	}
+
+	private final PeopleStore people;
+	private final FriendshipGraph graph;
+	private final List<Step> steps = new ArrayList<>();
+	private PostingList result;
+
+	QueryPlan(PeopleStore people, FriendshipGraph graph, List<QueryFilter> filters) {
+		this.people = people;
+		this.graph = graph;
+
+		int n = people.size();
+		int count = filters.size();
+		int[] matches = new int[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			matches[i] = Math.min(n, filters.get(i).estimate(people, graph));
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(matches[a], matches[b]));
+
+		/* Filters are taken as independent: each keeps its share of the people left */
+		double left = n;
+		for (int k = 0; k < count; k++) {
+			int i = order[k];
+			QueryFilter filter = filters.get(i);
+			long readCost = filter.readCost(people, matches[i]);
+			if (k == 0) {
+				left = matches[i];
+				steps.add(new Step(filter, Access.INDEX, matches[i], Math.round(left), readCost));
+				continue;
+			}
+			long probeCost = TEST_COST * Math.round(left);
+			long indexCost = readCost + Math.min(matches[i], Math.round(left));
+			left = (n == 0) ? 0 : left * matches[i] / n;
+			if (probeCost <= indexCost)
+				steps.add(new Step(filter, Access.PROBE, matches[i], Math.round(left), probeCost));
+			else
+				steps.add(new Step(filter, Access.INDEX, matches[i], Math.round(left), indexCost));
+		}
+	}
+
+	public List<Step> getSteps() {
+		return Collections.unmodifiableList(steps);
+	}
+
+	public long getEstimatedCost() {
+		long cost = 0;
+		for (Step step : steps)
+			cost += step.estimatedCost;
+		return cost;
+	}
+
+	/** Cost of running the plan, or 0 before it runs. */
+	public long getActualCost() {
+		long cost = 0;
+		for (Step step : steps)
+			cost += step.actualCost;
+		return cost;
+	}
+
+	/** Runs the plan the first time; later calls return the same rows. A plan without filters returns everyone. */
+	public PostingList execute() {
+		if (result != null)
+			return result;
+		RowBitmap left = steps.isEmpty() ? people.all() : null;
+		for (Step step : steps) {
+			long start = System.nanoTime();
+			if (left == null) {
+				left = step.filter.rows(people, graph);
+				step.actualCost = step.filter.readCost(people, left.cardinality());
+			} else if (left.isEmpty()) {
+				step.actualCost = 0;
+			} else if (step.access == Access.INDEX) {
+				RowBitmap rows = step.filter.rows(people, graph);
+				int read = rows.cardinality();
+				step.actualCost = step.filter.readCost(people, read) + Math.min(read, left.cardinality());
+				left = left.and(rows);
+			} else {
+				int[] candidates = left.toArray();
+				IntPredicate probe = step.filter.probe(people, graph);
+				RowBitmap kept = new RowBitmap();
+				for (int row : candidates) {
+					if (probe.test(row))
+						kept.add(row);
+				}
+				step.actualCost = (long) TEST_COST * candidates.length;
+				left = kept;
+			}
+			step.actualRows = left.cardinality();
+			step.nanos = System.nanoTime() - start;
+		}
+		result = left.toPostingList();
+		return result;
+	}
+
+	/** The steps in order, one per line, with estimated and actual costs. */
+	public String explain() {
+		StringBuilder sb = new StringBuilder();
+		if (steps.isEmpty())
+			sb.append("Scan all ").append(people.size()).append(" people\n");
+		for (int k = 0; k < steps.size(); k++)
+			sb.append(k + 1).append(". ").append(steps.get(k)).append('\n');
+		sb.append("Total: estimated cost ").append(getEstimatedCost());
+		if (result != null)
+			sb.append(", actual cost ").append(getActualCost()).append(", ").append(result.size()).append(" people");
+		return sb.append('\n').toString();
+	}
+}
@@ -0,0 +1,86 @@
+package main;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Input lines that could not be loaded, with the file and line they come
+ * from, so one bad line no longer costs the rest of its file. A whole file
+ * that could not be read is recorded with line 0.
+ */
+public class RejectLog {
+
+	/** One rejected line, or with line 0 a file that could not be read. */
+	public static final class Entry {
+		private final String file;
+		private final long line;
+		private final String reason;
+		private final String text;
+
+		Entry(String file, long line, String reason, String text) {
+			this.file = file;
+			this.line = line;
+			this.reason = reason;
+			this.text = text;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		/** Line number in the file, counting from 1 with the header; 0 for the whole file. */
+		public long getLine() {
+			return line;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		@Override
+		public String toString() {
+			return (line == 0) ? file + ": " + reason : file + ":" + line + ": " + reason + ": " + text;
+		}
+	}
+
+	private final List<Entry> entries = new ArrayList<>();
+
+	public void reject(String file, long line, String reason, String text) {
+		entries.add(new Entry(file, line, reason, text));
+	}
+
+	public void fileFailed(String file, String reason) {
+		entries.add(new Entry(file, 0, reason, ""));
+	}
+
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/** Rejected lines, not counting unreadable files. */
+	public long rejectedLines() {
+		return entries.stream().filter(e -> e.line > 0).count();
+	}
+
+	/** Writes one entry per line to {@code file}, replacing it. */
+	public void write(Path file) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			for (Entry entry : entries)
+				out.println(entry);
+		}
+	}
+}
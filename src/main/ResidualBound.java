@@ -0,0 +1,164 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Reachability and path-length bound for every child of a search node, from a
+ * single traversal of the residual graph (the graph minus the vertices on the
+ * current path).
+ *
+ * The traversal is an iterative Tarjan DFS rooted at the target, so it visits
+ * exactly the residual component that can still reach the target and splits
+ * it into biconnected blocks on the way. Any simple path from a vertex c to
+ * the target must run through the chain of blocks between them in the
+ * block-cut tree, so it has at most 1 + Σ(|B| - 1) vertices over that chain,
+ * which is usually far below the size of the component.
+ *
+ * All arrays are allocated once; one instance per search engine.
+ */
+public class ResidualBound {
+
+	private final FriendshipGraph graph;
+
+	private final int[] stamp;
+	private int epoch;
+	private final int[] disc;
+	private final int[] low;
+	private final int[] parent;
+	private final int[] frameVertex;
+	private final int[] frameCursor;
+	private final int[] vertexStack;
+	private final int[] blockOf;
+	private final int[] visited;
+
+	private final int[] blockSize;
+	private final int[] blockTop;
+	private final int[] chainWeight;
+
+	private int target;
+	private int componentSize;
+
+	public ResidualBound(FriendshipGraph graph) {
+		int n = graph.size();
+		this.graph = graph;
+		this.stamp = new int[n];
+		this.disc = new int[n];
+		this.low = new int[n];
+		this.parent = new int[n];
+		this.frameVertex = new int[n];
+		this.frameCursor = new int[n];
+		this.vertexStack = new int[n];
+		this.blockOf = new int[n];
+		this.visited = new int[n];
+		this.blockSize = new int[n];
+		this.blockTop = new int[n];
+		this.chainWeight = new int[n];
+	}
+
+	/** Analyses the residual graph of {@code onPath} around {@code target}. */
+	public void compute(boolean[] onPath, int target) {
+		if (++epoch == 0) {
+			Arrays.fill(stamp, 0);
+			epoch = 1;
+		}
+		this.target = target;
+
+		int time = 0;
+		int blocks = 0;
+		int top = 0;
+		int stacked = 0;
+
+		stamp[target] = epoch;
+		visited[time] = target;
+		disc[target] = low[target] = time++;
+		parent[target] = -1;
+		frameVertex[0] = target;
+		frameCursor[0] = graph.start(target);
+
+		while (top >= 0) {
+			int u = frameVertex[top];
+			if (frameCursor[top] < graph.end(u)) {
+				int w = graph.target(frameCursor[top]++);
+				if (onPath[w])
+					continue;
+				if (stamp[w] != epoch) {
+					stamp[w] = epoch;
+					visited[time] = w;
+					disc[w] = low[w] = time++;
+					parent[w] = u;
+					vertexStack[stacked++] = w;
+					top++;
+					frameVertex[top] = w;
+					frameCursor[top] = graph.start(w);
+				} else if (w != parent[u] && disc[w] < low[u]) {
+					low[u] = disc[w];
+				}
+				continue;
+			}
+
+			// u is finished: report the block it closes below its parent, if any
+			top--;
+			if (top < 0)
+				break;
+			int p = frameVertex[top];
+			if (low[u] < low[p])
+				low[p] = low[u];
+			if (low[u] >= disc[p]) {
+				int size = 1;
+				int x;
+				do {
+					x = vertexStack[--stacked];
+					blockOf[x] = blocks;
+					size++;
+				} while (x != u);
+				blockSize[blocks] = size;
+				blockTop[blocks] = p;
+				blocks++;
+			}
+		}
+		componentSize = time;
+
+		// a block's parent (the block holding its top as a non-top vertex) is always created later
+		for (int b = blocks - 1; b >= 0; b--) {
+			int t = blockTop[b];
+			chainWeight[b] = blockSize[b] - 1 + ((t == target) ? 0 : chainWeight[blockOf[t]]);
+		}
+	}
+
+	/**
+	 * Block that holds v as a non-top vertex. Blocks are numbered in the order
+	 * they close, and the target is the top of the last block on every chain.
+	 */
+	public int blockOf(int v) {
+		return blockOf[v];
+	}
+
+	/** The vertex through which block b hangs towards the target. */
+	public int blockTop(int b) {
+		return blockTop[b];
+	}
+
+	/** Whether v can still reach the target without touching the path. */
+	public boolean reachesTarget(int v) {
+		return stamp[v] == epoch;
+	}
+
+	/** Size of the residual component around the target, the target included. */
+	public int componentSize() {
+		return componentSize;
+	}
+
+	/** The i-th vertex of that component in visiting order, the target being the first. */
+	public int member(int i) {
+		return visited[i];
+	}
+
+	/**
+	 * Upper bound on the number of people on a simple path from v to the
+	 * target (both included) that avoids the current path. v must reach the
+	 * target.
+	 */
+	public int bound(int v) {
+		return (v == target) ? 1 : 1 + chainWeight[blockOf[v]];
+	}
+}
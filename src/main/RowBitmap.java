@@ -0,0 +1,563 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of row numbers of a {@link PeopleStore}, in the style of a
+ * roaring bitmap.
+ *
+ * Rows are split by their high 16 bits into chunks of 65536. A chunk with
+ * few rows keeps them as a sorted array of their low 16 bits; a chunk with
+ * more than {@value #ARRAY_MAX} keeps a 65536-bit bitmap. The set
+ * operations work chunk by chunk and pick a merge, a probe into the bitmap
+ * or a word-by-word operation depending on the two kinds of chunk, so their
+ * cost follows the size of the sets rather than the number of people.
+ *
+ * A RowBitmap handed out is never changed. The index that owns one updates
+ * it in place, but copies a chunk first if it has been handed out.
+ */
+public final class RowBitmap {
+
+	/* Largest array chunk; beyond it a bitmap (8 KB) is smaller */
+	private static final int ARRAY_MAX = 4096;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	public RowBitmap() {
+		this(new char[4], new Container[4], 0);
+	}
+
+	private RowBitmap(char[] keys, Container[] containers, int size) {
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	public static RowBitmap of(PostingList rows) {
+		RowBitmap bitmap = new RowBitmap();
+		for (int i = 0; i < rows.size(); i++)
+			bitmap.add(rows.get(i));
+		return bitmap;
+	}
+
+	/** Every row from {@code from} (included) to {@code to} (excluded). */
+	public static RowBitmap range(int from, int to) {
+		RowBitmap bitmap = new RowBitmap();
+		for (int start = from; start < to;) {
+			int high = start >>> 16;
+			int end = Math.min(to, (high + 1) << 16);
+			bitmap.append((char) high, Container.range(start & 0xFFFF, end - (high << 16)));
+			start = end;
+		}
+		return bitmap;
+	}
+
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++)
+			cardinality += containers[i].cardinality();
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int row) {
+		int i = find((char) (row >>> 16));
+		return i >= 0 && containers[i].contains((char) row);
+	}
+
+	/* ---- Set algebra; the operands are left as they are ---- */
+
+	public RowBitmap and(RowBitmap other) {
+		RowBitmap result = new RowBitmap();
+		for (int i = 0, j = 0; i < size && j < other.size;) {
+			if (keys[i] < other.keys[j])
+				i++;
+			else if (keys[i] > other.keys[j])
+				j++;
+			else {
+				Container c = Container.and(containers[i], other.containers[j]);
+				if (c.cardinality() > 0)
+					result.append(keys[i], c);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public RowBitmap or(RowBitmap other) {
+		RowBitmap result = new RowBitmap();
+		int i = 0, j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.append(keys[i], containers[i]);
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				result.append(other.keys[j], other.containers[j]);
+				j++;
+			} else {
+				result.append(keys[i], Container.or(containers[i], other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/** The rows here that are not in {@code other}. */
+	public RowBitmap andNot(RowBitmap other) {
+		RowBitmap result = new RowBitmap();
+		for (int i = 0, j = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i])
+				j++;
+			if (j == other.size || other.keys[j] != keys[i]) {
+				result.append(keys[i], containers[i]);
+				continue;
+			}
+			Container c = Container.andNot(containers[i], other.containers[j]);
+			if (c.cardinality() > 0)
+				result.append(keys[i], c);
+		}
+		return result;
+	}
+
+	/** The rows below {@code universe}, normally the number of people, that are not here. */
+	public RowBitmap not(int universe) {
+		return range(0, universe).andNot(this);
+	}
+
+	/** Cardinality of {@code and(other)}, without building it. */
+	public int andCardinality(RowBitmap other) {
+		int cardinality = 0;
+		for (int i = 0, j = 0; i < size && j < other.size;) {
+			if (keys[i] < other.keys[j])
+				i++;
+			else if (keys[i] > other.keys[j])
+				j++;
+			else
+				cardinality += Container.andCardinality(containers[i++], other.containers[j++]);
+		}
+		return cardinality;
+	}
+
+	public int[] toArray() {
+		int[] rows = new int[cardinality()];
+		int at = 0;
+		for (int i = 0; i < size; i++)
+			at = containers[i].fill(rows, at, keys[i] << 16);
+		return rows;
+	}
+
+	public PostingList toPostingList() {
+		return PostingList.of(toArray());
+	}
+
+	/* ---- Updates, by the index that owns the bitmap ---- */
+
+	void add(int row) {
+		char high = (char) (row >>> 16);
+		int i = (size > 0 && keys[size - 1] == high) ? size - 1 : find(high);
+		if (i < 0) {
+			i = -i - 1;
+			insertAt(i, high, new ArrayContainer());
+		}
+		containers[i] = owned(i).add((char) row);
+	}
+
+	void remove(int row) {
+		int i = find((char) (row >>> 16));
+		if (i < 0 || !containers[i].contains((char) row))
+			return;
+		Container c = owned(i).remove((char) row);
+		if (c.cardinality() > 0) {
+			containers[i] = c;
+			return;
+		}
+		System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+		System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+		containers[--size] = null;
+	}
+
+	/* The rows as they are now; later updates copy the chunks they touch */
+	RowBitmap snapshot() {
+		for (int i = 0; i < size; i++)
+			containers[i].shared = true;
+		return new RowBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size), size);
+	}
+
+	void trimToSize() {
+		keys = Arrays.copyOf(keys, size);
+		containers = Arrays.copyOf(containers, size);
+		for (int i = 0; i < size; i++) {
+			if (!containers[i].shared)
+				containers[i].trimToSize();
+		}
+	}
+
+	private Container owned(int i) {
+		if (containers[i].shared)
+			containers[i] = containers[i].copy();
+		return containers[i];
+	}
+
+	private int find(char high) {
+		int lo = 0, hi = size - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < high)
+				lo = mid + 1;
+			else if (keys[mid] > high)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+
+	private void append(char high, Container c) {
+		insertAt(size, high, c);
+	}
+
+	private void insertAt(int i, char high, Container c) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+			containers = Arrays.copyOf(containers, keys.length);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = high;
+		containers[i] = c;
+		size++;
+	}
+
+	/* ---- Chunks ---- */
+
+	private abstract static class Container {
+		/* Also referenced by a bitmap handed out, so it must be copied before a change */
+		boolean shared;
+
+		abstract int cardinality();
+
+		abstract boolean contains(char low);
+
+		/* These return the container to use from now on, which may be of the other kind */
+		abstract Container add(char low);
+
+		abstract Container remove(char low);
+
+		abstract Container copy();
+
+		abstract void trimToSize();
+
+		/* Writes high | low for every low into rows from at; returns the next position */
+		abstract int fill(int[] rows, int at, int high);
+
+		static Container range(int from, int to) {
+			if (to - from <= ARRAY_MAX) {
+				ArrayContainer c = new ArrayContainer(to - from);
+				for (int low = from; low < to; low++)
+					c.values[c.size++] = (char) low;
+				return c;
+			}
+			BitmapContainer c = new BitmapContainer();
+			int first = from >>> 6, last = (to - 1) >>> 6;
+			Arrays.fill(c.words, first, last + 1, -1L);
+			c.words[first] &= -1L << from;
+			c.words[last] &= -1L >>> (63 - ((to - 1) & 63));
+			c.cardinality = to - from;
+			return c;
+		}
+
+		static Container and(Container a, Container b) {
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+				return ((ArrayContainer) a).and((ArrayContainer) b);
+			if (a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filter((BitmapContainer) b, true);
+			if (b instanceof ArrayContainer)
+				return ((ArrayContainer) b).filter((BitmapContainer) a, true);
+			long[] x = ((BitmapContainer) a).words, y = ((BitmapContainer) b).words;
+			long[] words = new long[x.length];
+			for (int w = 0; w < words.length; w++)
+				words[w] = x[w] & y[w];
+			return BitmapContainer.of(words);
+		}
+
+		static Container or(Container a, Container b) {
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+				return ((ArrayContainer) a).or((ArrayContainer) b);
+			if (a instanceof ArrayContainer)
+				return ((BitmapContainer) b).with((ArrayContainer) a);
+			if (b instanceof ArrayContainer)
+				return ((BitmapContainer) a).with((ArrayContainer) b);
+			long[] x = ((BitmapContainer) a).words, y = ((BitmapContainer) b).words;
+			long[] words = new long[x.length];
+			for (int w = 0; w < words.length; w++)
+				words[w] = x[w] | y[w];
+			return BitmapContainer.of(words);
+		}
+
+		static Container andNot(Container a, Container b) {
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+				return ((ArrayContainer) a).andNot((ArrayContainer) b);
+			if (a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filter((BitmapContainer) b, false);
+			long[] words = ((BitmapContainer) a).words.clone();
+			if (b instanceof ArrayContainer) {
+				ArrayContainer c = (ArrayContainer) b;
+				for (int i = 0; i < c.size; i++)
+					words[c.values[i] >>> 6] &= ~(1L << c.values[i]);
+			} else {
+				long[] y = ((BitmapContainer) b).words;
+				for (int w = 0; w < words.length; w++)
+					words[w] &= ~y[w];
+			}
+			return BitmapContainer.of(words);
+		}
+
+		static int andCardinality(Container a, Container b) {
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+				return ((ArrayContainer) a).and((ArrayContainer) b).size;
+			if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+				ArrayContainer c = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+				BitmapContainer bits = (BitmapContainer) (a instanceof ArrayContainer ? b : a);
+				int count = 0;
+				for (int i = 0; i < c.size; i++) {
+					if (bits.contains(c.values[i]))
+						count++;
+				}
+				return count;
+			}
+			long[] x = ((BitmapContainer) a).words, y = ((BitmapContainer) b).words;
+			int count = 0;
+			for (int w = 0; w < x.length; w++)
+				count += Long.bitCount(x[w] & y[w]);
+			return count;
+		}
+	}
+
+	private static final class ArrayContainer extends Container {
+		char[] values;
+		int size;
+
+		ArrayContainer() {
+			this(4);
+		}
+
+		ArrayContainer(int capacity) {
+			values = new char[capacity];
+		}
+
+		@Override
+		int cardinality() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return Arrays.binarySearch(values, 0, size, low) >= 0;
+		}
+
+		@Override
+		Container add(char low) {
+			int at = (size == 0 || values[size - 1] < low) ? -(size + 1) : Arrays.binarySearch(values, 0, size, low);
+			if (at >= 0)
+				return this;
+			if (size == ARRAY_MAX)
+				return toBitmap().add(low);
+			at = -at - 1;
+			if (size == values.length)
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, size * 2)));
+			System.arraycopy(values, at, values, at + 1, size - at);
+			values[at] = low;
+			size++;
+			return this;
+		}
+
+		@Override
+		Container remove(char low) {
+			int at = Arrays.binarySearch(values, 0, size, low);
+			if (at >= 0) {
+				System.arraycopy(values, at + 1, values, at, size - at - 1);
+				size--;
+			}
+			return this;
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer c = new ArrayContainer(Math.max(1, size));
+			System.arraycopy(values, 0, c.values, 0, size);
+			c.size = size;
+			return c;
+		}
+
+		@Override
+		void trimToSize() {
+			values = Arrays.copyOf(values, size);
+		}
+
+		@Override
+		int fill(int[] rows, int at, int high) {
+			for (int i = 0; i < size; i++)
+				rows[at++] = high | values[i];
+			return at;
+		}
+
+		BitmapContainer toBitmap() {
+			BitmapContainer c = new BitmapContainer();
+			for (int i = 0; i < size; i++)
+				c.words[values[i] >>> 6] |= 1L << values[i];
+			c.cardinality = size;
+			return c;
+		}
+
+		ArrayContainer and(ArrayContainer other) {
+			ArrayContainer c = new ArrayContainer(Math.max(1, Math.min(size, other.size)));
+			for (int i = 0, j = 0; i < size && j < other.size;) {
+				if (values[i] < other.values[j])
+					i++;
+				else if (values[i] > other.values[j])
+					j++;
+				else {
+					c.values[c.size++] = values[i];
+					i++;
+					j++;
+				}
+			}
+			return c;
+		}
+
+		Container or(ArrayContainer other) {
+			if (size + other.size > ARRAY_MAX) {
+				BitmapContainer c = toBitmap();
+				for (int i = 0; i < other.size; i++)
+					c.add(other.values[i]);
+				return (c.cardinality > ARRAY_MAX) ? c : BitmapContainer.of(c.words);
+			}
+			char[] merged = new char[size + other.size];
+			int n = 0, i = 0, j = 0;
+			while (i < size || j < other.size) {
+				char v;
+				if (j == other.size || (i < size && values[i] < other.values[j]))
+					v = values[i++];
+				else if (i == size || values[i] > other.values[j])
+					v = other.values[j++];
+				else {
+					v = values[i++];
+					j++;
+				}
+				merged[n++] = v;
+			}
+			ArrayContainer c = new ArrayContainer(0);
+			c.values = merged;
+			c.size = n;
+			return c;
+		}
+
+		ArrayContainer andNot(ArrayContainer other) {
+			ArrayContainer c = new ArrayContainer(Math.max(1, size));
+			for (int i = 0, j = 0; i < size; i++) {
+				while (j < other.size && other.values[j] < values[i])
+					j++;
+				if (j == other.size || other.values[j] != values[i])
+					c.values[c.size++] = values[i];
+			}
+			return c;
+		}
+
+		/* The values that are (keep) or are not (!keep) in bits */
+		ArrayContainer filter(BitmapContainer bits, boolean keep) {
+			ArrayContainer c = new ArrayContainer(Math.max(1, size));
+			for (int i = 0; i < size; i++) {
+				if (bits.contains(values[i]) == keep)
+					c.values[c.size++] = values[i];
+			}
+			return c;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		long[] words = new long[1 << 10];
+		int cardinality;
+
+		/* The smaller kind of container holding the bits of words */
+		static Container of(long[] words) {
+			int cardinality = 0;
+			for (long word : words)
+				cardinality += Long.bitCount(word);
+			if (cardinality <= ARRAY_MAX) {
+				ArrayContainer c = new ArrayContainer(Math.max(1, cardinality));
+				for (int w = 0; w < words.length; w++) {
+					for (long word = words[w]; word != 0; word &= word - 1)
+						c.values[c.size++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+				}
+				return c;
+			}
+			BitmapContainer c = new BitmapContainer();
+			c.words = words;
+			c.cardinality = cardinality;
+			return c;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		Container add(char low) {
+			if (!contains(low)) {
+				words[low >>> 6] |= 1L << low;
+				cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char low) {
+			if (!contains(low))
+				return this;
+			words[low >>> 6] &= ~(1L << low);
+			cardinality--;
+			return (cardinality <= ARRAY_MAX / 2) ? of(words) : this;
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer c = new BitmapContainer();
+			c.words = words.clone();
+			c.cardinality = cardinality;
+			return c;
+		}
+
+		@Override
+		void trimToSize() {
+		}
+
+		@Override
+		int fill(int[] rows, int at, int high) {
+			for (int w = 0; w < words.length; w++) {
+				for (long word = words[w]; word != 0; word &= word - 1)
+					rows[at++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+			}
+			return at;
+		}
+
+		Container with(ArrayContainer other) {
+			BitmapContainer c = (BitmapContainer) copy();
+			for (int i = 0; i < other.size; i++)
+				c.add(other.values[i]);
+			return c;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * State of an interruptible longest-path search: the two people, the
+ * strategy, the incumbent, an upper bound on the answer and the frontier of
+ * subtrees still to explore. {@link CheckpointedSearch} advances it, and it
+ * can be saved to a file and loaded again in another run, with any number of
+ * threads.
+ *
+ * The file stores people by id, not by vertex index, so it stays valid as
+ * long as the same people and friendships are loaded, in any order:
+ *
+ * <pre>
+ * int     magic "LPCK", int format version
+ * UTF     source id, target id, strategy name
+ * int     upper bound
+ * int     n, then n UTF ids: the people the rest of the file refers to
+ * int     incumbent length, then that many indexes into the ids
+ * int     subtrees, then for each: int length and that many indexes
+ * </pre>
+ */
+public class SearchCheckpoint {
+
+	private static final int MAGIC = 0x4C50434B;
+	private static final int FORMAT_VERSION = 1;
+
+	private final int source;
+	private final int target;
+	private final SearchStrategy strategy;
+	private final int upperBound;
+	private final LongestPathResult best;
+	private final SearchFrontier frontier;
+
+	public SearchCheckpoint(int source, int target, SearchStrategy strategy, int upperBound, LongestPathResult best,
+			SearchFrontier frontier) {
+		this.source = source;
+		this.target = target;
+		this.strategy = strategy;
+		this.upperBound = upperBound;
+		this.best = best;
+		this.frontier = frontier;
+	}
+
+	public int getSource() {
+		return source;
+	}
+
+	public int getTarget() {
+		return target;
+	}
+
+	public SearchStrategy getStrategy() {
+		return strategy;
+	}
+
+	/** No path between the two people has more people than this. */
+	public int getUpperBound() {
+		return upperBound;
+	}
+
+	/** The incumbent; it keeps improving while a search runs on this checkpoint. */
+	public LongestPathResult getBest() {
+		return best;
+	}
+
+	public SearchFrontier getFrontier() {
+		return frontier;
+	}
+
+	/** Whether the whole search tree has been explored, i.e. the incumbent is optimal. */
+	public boolean isComplete() {
+		return frontier.isExhausted();
+	}
+
+	/**
+	 * Saves this checkpoint to {@code file}, through a temporary file so an
+	 * interrupted save never replaces a good checkpoint. No search may be
+	 * running on it.
+	 */
+	public void write(FriendshipGraph graph, Path file) throws IOException {
+		// ---- Number the people the file refers to ----
+		int[] code = new int[graph.size()];
+		Arrays.fill(code, -1);
+		List<Integer> people = new ArrayList<>();
+		int[] incumbent = best.bestPath();
+		for (int v : incumbent)
+			number(v, code, people);
+		frontier.forEach(prefix -> {
+			for (int v : prefix)
+				number(v, code, people);
+		});
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(graph.idOf(source));
+			out.writeUTF(graph.idOf(target));
+			out.writeUTF(strategy.name());
+			out.writeInt(upperBound);
+
+			out.writeInt(people.size());
+			for (int v : people)
+				out.writeUTF(graph.idOf(v));
+			writePath(out, incumbent, code);
+
+			out.writeInt(frontier.size());
+			IOException[] failure = new IOException[1];
+			frontier.forEach(prefix -> {
+				try {
+					writePath(out, prefix, code);
+				} catch (IOException e) {
+					failure[0] = e;
+				}
+			});
+			if (failure[0] != null)
+				throw failure[0];
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Loads a checkpoint written by {@link #write}. Fails if the file is not
+	 * a checkpoint, or refers to people or friendships that are not in the
+	 * graph.
+	 */
+	public static SearchCheckpoint read(FriendshipGraph graph, Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a longest-path checkpoint");
+			int version = in.readInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported checkpoint version " + version);
+
+			int source = vertex(graph, in.readUTF());
+			int target = vertex(graph, in.readUTF());
+			SearchStrategy strategy;
+			try {
+				strategy = SearchStrategy.valueOf(in.readUTF());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown strategy in checkpoint", e);
+			}
+			int upperBound = in.readInt();
+
+			int[] people = new int[in.readInt()];
+			for (int i = 0; i < people.length; i++)
+				people[i] = vertex(graph, in.readUTF());
+
+			LongestPathResult best = new LongestPathResult();
+			int[] incumbent = readPath(in, people, graph);
+			best.offer(incumbent, incumbent.length);
+
+			// pushed in reverse so the frontier comes back in the order it was saved
+			int[][] prefixes = new int[in.readInt()][];
+			for (int i = 0; i < prefixes.length; i++) {
+				prefixes[i] = readPath(in, people, graph);
+				if (prefixes[i].length == 0 || prefixes[i][0] != source)
+					throw new IOException("Checkpoint subtree does not start at the source");
+			}
+			SearchFrontier frontier = new SearchFrontier();
+			for (int i = prefixes.length - 1; i >= 0; i--)
+				frontier.push(prefixes[i]);
+
+			return new SearchCheckpoint(source, target, strategy, upperBound, best, frontier);
+		}
+	}
+
+	private static void number(int v, int[] code, List<Integer> people) {
+		if (code[v] < 0) {
+			code[v] = people.size();
+			people.add(v);
+		}
+	}
+
+	private static void writePath(DataOutputStream out, int[] path, int[] code) throws IOException {
+		out.writeInt(path.length);
+		for (int v : path)
+			out.writeInt(code[v]);
+	}
+
+	private static int[] readPath(DataInputStream in, int[] people, FriendshipGraph graph) throws IOException {
+		int[] path = new int[in.readInt()];
+		for (int i = 0; i < path.length; i++) {
+			int index = in.readInt();
+			if (index < 0 || index >= people.length)
+				throw new IOException("Corrupt checkpoint");
+			path[i] = people[index];
+			if (i > 0 && !graph.areFriends(path[i - 1], path[i]))
+				throw new IOException(graph.idOf(path[i - 1]) + " and " + graph.idOf(path[i]) + " are no longer friends");
+		}
+		return path;
+	}
+
+	private static int vertex(FriendshipGraph graph, String id) throws IOException {
+		int v = graph.indexOf(id);
+		if (v < 0)
+			throw new IOException("Person with ID '" + id + "' from the checkpoint does not exist.");
+		return v;
+	}
+}
@@ -0,0 +1,100 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Subtrees of a longest-path search that are still to be explored, so a DFS
+ * can stop at any time and go on later, possibly on another thread.
+ *
+ * A subtree is the set of paths that start with a given prefix. Subtrees cut
+ * from the same search node share one copy of the trunk they hang from, so
+ * stopping deep in the tree costs one array plus one small entry per sibling
+ * left. Workers take the most recent subtree first, which keeps the search
+ * depth-first and the frontier small.
+ */
+public class SearchFrontier {
+
+	/** The paths that start with {@code trunk[0..length)} followed by {@code last}. */
+	public static final class Subtree {
+		private final int[] trunk;
+		private final int length;
+		private final int last;
+
+		Subtree(int[] trunk, int length, int last) {
+			this.trunk = trunk;
+			this.length = length;
+			this.last = last;
+		}
+
+		/** Number of people in the prefix. */
+		public int size() {
+			return length + 1;
+		}
+
+		public int[] prefix() {
+			int[] prefix = Arrays.copyOf(trunk, length + 1);
+			prefix[length] = last;
+			return prefix;
+		}
+	}
+
+	private final ConcurrentLinkedDeque<Subtree> pending = new ConcurrentLinkedDeque<>();
+	/* Size of the deque, which it cannot tell in constant time itself */
+	private final AtomicInteger waiting = new AtomicInteger();
+	/* Subtrees taken and not finished yet, counted before they leave the deque */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/** A frontier holding the whole search from source. */
+	public static SearchFrontier from(int source) {
+		SearchFrontier frontier = new SearchFrontier();
+		frontier.push(new int[0], 0, source);
+		return frontier;
+	}
+
+	public void push(int[] trunk, int length, int last) {
+		pending.addFirst(new Subtree(trunk, length, last));
+		waiting.incrementAndGet();
+	}
+
+	public void push(int[] prefix) {
+		push(prefix, prefix.length - 1, prefix[prefix.length - 1]);
+	}
+
+	/**
+	 * Takes the next subtree, or returns null if there is none right now.
+	 * Every subtree taken must be handed back with {@link #finished()}.
+	 */
+	public Subtree poll() {
+		active.incrementAndGet();
+		Subtree next = pending.pollFirst();
+		if (next == null)
+			active.decrementAndGet();
+		else
+			waiting.decrementAndGet();
+		return next;
+	}
+
+	/** The last subtree taken has been explored, or split back into this frontier. */
+	public void finished() {
+		active.decrementAndGet();
+	}
+
+	/** Whether every subtree has been explored. */
+	public boolean isExhausted() {
+		return active.get() == 0 && pending.isEmpty();
+	}
+
+	/** Subtrees waiting, not counting those being explored. */
+	public int size() {
+		return waiting.get();
+	}
+
+	/** Visits the prefixes of the waiting subtrees, most recent first. */
+	public void forEach(Consumer<int[]> action) {
+		for (Subtree subtree : pending)
+			action.accept(subtree.prefix());
+	}
+}
@@ -0,0 +1,32 @@
+package main;
+
+/**
+ * DFS variants of the longest-path search, from plain backtracking to the
+ * randomized version used with restarts.
+ */
+public enum SearchStrategy {
+	/** Every simple path, no pruning. */
+	BACKTRACKING(false, false),
+	/** Skips children that cannot reach the target or cannot beat the incumbent. */
+	PRUNING(true, false),
+	/** Pruning, visiting the children with most free neighbours first. */
+	HEURISTICS(true, true),
+	/** Heuristic order with random tie-breaking, meant to be restarted often. */
+	RANDOMIZED(true, true);
+
+	private final boolean prunes;
+	private final boolean ordersChildren;
+
+	SearchStrategy(boolean prunes, boolean ordersChildren) {
+		this.prunes = prunes;
+		this.ordersChildren = ordersChildren;
+	}
+
+	public boolean prunes() {
+		return prunes;
+	}
+
+	public boolean ordersChildren() {
+		return ordersChildren;
+	}
+}
@@ -0,0 +1,121 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the bidirectional search with the one-sided BFS that option 10 used
+ * before, on a synthetic small-world (Watts–Strogatz) graph.
+ *
+ * Usage: {@code java main.ShortestChainBenchmark [people] [friendsPerPerson] [queries]}
+ */
+public class ShortestChainBenchmark {
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+		System.out.println("Building small-world graph: " + n + " people, " + k + " friends each");
+		FriendshipGraph graph = smallWorld(n, k, 0.05, new Random(42));
+
+		Random rnd = new Random(7);
+		int[] sources = new int[queries];
+		int[] targets = new int[queries];
+		for (int i = 0; i < queries; i++) {
+			sources[i] = rnd.nextInt(n);
+			targets[i] = rnd.nextInt(n);
+		}
+
+		BidirectionalBfs bidirectional = new BidirectionalBfs(graph);
+		int[] parent = new int[n];
+		int[] queue = new int[n];
+
+		// ---- Warm up both implementations ----
+		for (int i = 0; i < Math.min(queries, 20); i++) {
+			bidirectional.shortestChain(sources[i], targets[i]);
+			oneSidedBfs(graph, sources[i], targets[i], parent, queue);
+		}
+
+		long oneSidedTouched = 0;
+		long start = System.nanoTime();
+		int[] oneSidedLengths = new int[queries];
+		for (int i = 0; i < queries; i++) {
+			oneSidedTouched += oneSidedBfs(graph, sources[i], targets[i], parent, queue);
+			oneSidedLengths[i] = chainLength(parent, sources[i], targets[i]);
+		}
+		long oneSidedNanos = System.nanoTime() - start;
+
+		long bidirectionalTouched = 0;
+		start = System.nanoTime();
+		int mismatches = 0;
+		for (int i = 0; i < queries; i++) {
+			int[] path = bidirectional.shortestChain(sources[i], targets[i]);
+			bidirectionalTouched += bidirectional.getTouched();
+			int length = (path == null) ? -1 : path.length - 1;
+			if (length != oneSidedLengths[i])
+				mismatches++;
+		}
+		long bidirectionalNanos = System.nanoTime() - start;
+
+		System.out.printf("%-15s %12s %18s\n", "Algorithm", "ms/query", "vertices/query");
+		System.out.printf("%-15s %12.3f %18d\n", "one-sided", oneSidedNanos / 1e6 / queries, oneSidedTouched / queries);
+		System.out.printf("%-15s %12.3f %18d\n", "bidirectional", bidirectionalNanos / 1e6 / queries,
+				bidirectionalTouched / queries);
+		System.out.printf("Speed-up: %.1fx, length mismatches: %d\n", (double) oneSidedNanos / bidirectionalNanos,
+				mismatches);
+	}
+
+	/* Ring lattice with k neighbours per vertex where every edge is rewired with probability p */
+	static FriendshipGraph smallWorld(int n, int k, double p, Random rnd) {
+		String[] ids = new String[n];
+		for (int i = 0; i < n; i++)
+			ids[i] = "P" + i;
+
+		int count = n * (k / 2);
+		int[] from = new int[count];
+		int[] to = new int[count];
+		int e = 0;
+		for (int v = 0; v < n; v++) {
+			for (int j = 1; j <= k / 2; j++) {
+				from[e] = v;
+				to[e] = (rnd.nextDouble() < p) ? rnd.nextInt(n) : (v + j) % n;
+				e++;
+			}
+		}
+		return FriendshipGraph.fromEdges(ids, from, to, count);
+	}
+
+	/* Same search option 10 ran before: stop only once the target is dequeued */
+	private static int oneSidedBfs(FriendshipGraph graph, int source, int target, int[] parent, int[] queue) {
+		Arrays.fill(parent, -1);
+		int head = 0, tail = 0;
+		boolean found = false;
+
+		parent[source] = source;
+		queue[tail++] = source;
+
+		while (head < tail && !found) {
+			int node = queue[head++];
+			if (node == target)
+				found = true;
+			for (int e = graph.start(node); e < graph.end(node); e++) {
+				int friend = graph.target(e);
+				if (parent[friend] == -1) {
+					parent[friend] = node;
+					queue[tail++] = friend;
+				}
+			}
+		}
+		return tail;
+	}
+
+	private static int chainLength(int[] parent, int source, int target) {
+		if (parent[target] == -1)
+			return -1;
+		int length = 0;
+		for (int node = target; node != source; node = parent[node])
+			length++;
+		return length;
+	}
+}
@@ -0,0 +1,53 @@
+package main;
+
+/**
+ * Dictionary encoding of one column of the people store: every distinct
+ * value is kept once and stands for an int code, its position in order of
+ * first appearance. A missing value (null) has code -1.
+ *
+ * The values are kept the way {@link IdIndex} keeps ids, as UTF-8 bytes in
+ * one array behind an open-addressing table, so a column of mostly distinct
+ * values, like names, costs a few bytes per value rather than a String and a
+ * map entry each. Decoding builds a new String.
+ */
+public class StringDictionary {
+
+	private final IdIndex values;
+
+	public StringDictionary() {
+		this(new IdIndex());
+	}
+
+	/** A dictionary over values saved with {@link #values()}. */
+	StringDictionary(IdIndex values) {
+		this.values = values;
+	}
+
+	/** Code of {@code value}, which is added if it is new. */
+	public int encode(String value) {
+		return (value == null) ? -1 : values.add(value);
+	}
+
+	/** Code of {@code value}, or -1 if it is not in the dictionary. */
+	public int codeOf(String value) {
+		return (value == null) ? -1 : values.indexOf(value);
+	}
+
+	public String decode(int code) {
+		return (code < 0) ? null : values.idOf(code);
+	}
+
+	/** Number of distinct values. */
+	public int size() {
+		return values.size();
+	}
+
+	public void trimToSize() {
+		values.trimToSize();
+	}
+
+	/* The encoded values, for snapshots */
+	IdIndex values() {
+		return values;
+	}
+}